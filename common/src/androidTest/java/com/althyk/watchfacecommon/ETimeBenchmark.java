@@ -0,0 +1,72 @@
+package com.althyk.watchfacecommon;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+/**
+ * Times the ET conversions: the double arithmetic ETime used to do, setLtMillis() and the
+ * static getTimeSlot(). Results are logged as ns per call under the tag "Benchmark".
+ */
+public class ETimeBenchmark extends TestCase {
+    private static final String TAG = "Benchmark";
+
+    private static final long START_LT_MILLIS = 1420070400000L; // 2015-01-01 UTC
+    private static final int WARMUP = 100000;
+    private static final int ITERATIONS = 1000000;
+
+    public void testConversions() {
+        doubleFields(WARMUP);
+        long start = System.nanoTime();
+        long doubleResult = doubleFields(ITERATIONS);
+        long doubleNanos = System.nanoTime() - start;
+
+        ETime etime = new ETime();
+        integerFields(etime, WARMUP);
+        start = System.nanoTime();
+        long integerResult = integerFields(etime, ITERATIONS);
+        long integerNanos = System.nanoTime() - start;
+
+        timeSlots(WARMUP);
+        start = System.nanoTime();
+        long slotResult = timeSlots(ITERATIONS);
+        long slotNanos = System.nanoTime() - start;
+
+        Log.i(TAG, "ETime: double fields " + doubleNanos / ITERATIONS
+                + " ns/op, setLtMillis " + integerNanos / ITERATIONS
+                + " ns/op, getTimeSlot " + slotNanos / ITERATIONS + " ns/op ("
+                + doubleResult + ", " + integerResult + ", " + slotResult + ")");
+    }
+
+    /** The conversion of the original ETime.setLtMillis(). */
+    private static long doubleFields(int iterations) {
+        long sum = 0;
+        for (int i = 0; i < iterations; i++) {
+            double time = (START_LT_MILLIS + i * 997L) * ETime.L_E_TIME_RATE;
+            sum += (int) Math.floor(time / ETime.YEAR_IN_MILLIS)
+                    + (int) (Math.floor(time / ETime.MONTH_IN_MILLIS) % ETime.YEAR_IN_MONTH)
+                    + (int) (Math.floor(time / ETime.DAY_IN_MILLIS) % ETime.MONTH_IN_DAY)
+                    + (int) (Math.floor(time / ETime.HOUR_IN_MILLIS) % ETime.DAY_IN_HOUR)
+                    + (int) (Math.floor(time / ETime.MINUTE_IN_MILLIS) % ETime.HOUR_IN_MINUTE)
+                    + (int) (Math.floor(time / ETime.SECOND_IN_MILLIS) % ETime.MINUTE_IN_SECOND);
+        }
+        return sum;
+    }
+
+    private static long integerFields(ETime etime, int iterations) {
+        long sum = 0;
+        for (int i = 0; i < iterations; i++) {
+            etime.setLtMillis(START_LT_MILLIS + i * 997L);
+            sum += etime.year + etime.month + etime.day + etime.hour + etime.minute + etime.second;
+        }
+        return sum;
+    }
+
+    private static long timeSlots(int iterations) {
+        long sum = 0;
+        for (int i = 0; i < iterations; i++) {
+            sum += ETime.getTimeSlot(START_LT_MILLIS + i * 997L);
+        }
+        return sum;
+    }
+}
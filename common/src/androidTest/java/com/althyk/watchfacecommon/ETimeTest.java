@@ -0,0 +1,113 @@
+package com.althyk.watchfacecommon;
+
+import junit.framework.TestCase;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * Checks the integer ETime conversions against exact rational arithmetic, over random instants
+ * up to year 3000 LT and around every kind of ET boundary.
+ */
+public class ETimeTest extends TestCase {
+    private static final long MAX_LT_MILLIS = 32503680000000L; // 3000-01-01 UTC
+    private static final int SAMPLES = 100000;
+
+    private static final BigInteger NUMERATOR = BigInteger.valueOf(144);
+    private static final BigInteger DENOMINATOR = BigInteger.valueOf(7);
+
+    private final Random mRandom = new Random(42);
+
+    public void testToEtMillisIsExact() {
+        for (int i = 0; i < SAMPLES; i++) {
+            long ltMillis = nextLtMillis();
+            assertEquals(exactEtMillis(ltMillis), ETime.toEtMillis(ltMillis));
+        }
+        assertEquals(exactEtMillis(MAX_LT_MILLIS), ETime.toEtMillis(MAX_LT_MILLIS));
+    }
+
+    public void testFields() {
+        ETime etime = new ETime();
+        for (int i = 0; i < SAMPLES; i++) {
+            long ltMillis = nextLtMillis();
+            long etMillis = exactEtMillis(ltMillis);
+            etime.setLtMillis(ltMillis);
+            assertEquals(etMillis, etime.time);
+            assertEquals(etMillis / ETime.YEAR_IN_MILLIS, etime.year);
+            assertEquals(etMillis / ETime.MONTH_IN_MILLIS % 12, etime.month);
+            assertEquals(etMillis / ETime.DAY_IN_MILLIS % 32, etime.day);
+            assertEquals(etMillis / ETime.HOUR_IN_MILLIS % 24, etime.hour);
+            assertEquals(etMillis / ETime.MINUTE_IN_MILLIS % 60, etime.minute);
+            assertEquals(etMillis / ETime.SECOND_IN_MILLIS % 60, etime.second);
+
+            assertEquals(etime.hour, ETime.getHour(ltMillis));
+            assertEquals(etime.minute, ETime.getMinute(ltMillis));
+            assertEquals(etMillis / ETime.WINDOW_IN_MILLIS, ETime.getTimeSlot(ltMillis));
+            assertEquals(ETime.getTimeSlot(ltMillis), etime.getTimeSlot());
+
+            long startEtMillis = etime.getStartEtMillis();
+            assertEquals(0, startEtMillis % ETime.WINDOW_IN_MILLIS);
+            assertTrue(startEtMillis <= etMillis
+                    && etMillis < startEtMillis + ETime.WINDOW_IN_MILLIS);
+        }
+    }
+
+    public void testToLtMillisIsFirstInstant() {
+        for (int i = 0; i < SAMPLES; i++) {
+            long etMillis = ETime.toEtMillis(nextLtMillis()) + mRandom.nextInt(100);
+            long ltMillis = ETime.toLtMillis(etMillis);
+            assertTrue(ETime.toEtMillis(ltMillis) >= etMillis);
+            assertTrue(ETime.toEtMillis(ltMillis - 1) < etMillis);
+        }
+    }
+
+    public void testNextBoundary() {
+        long[] units = {
+                ETime.MINUTE_IN_MILLIS, ETime.HOUR_IN_MILLIS, ETime.WINDOW_IN_MILLIS,
+                ETime.DAY_IN_MILLIS,
+        };
+        for (long unit : units) {
+            for (int i = 0; i < SAMPLES / 10; i++) {
+                long ltMillis = nextLtMillis();
+                assertBoundary(ltMillis, unit);
+                // exactly at and right around a boundary
+                long boundary = ETime.nextBoundary(ltMillis, unit);
+                assertBoundary(boundary - 1, unit);
+                assertBoundary(boundary, unit);
+                assertBoundary(boundary + 1, unit);
+            }
+        }
+    }
+
+    public void testWindowBoundaries() {
+        // the slot changes exactly at the LT instant nextBoundary() returns
+        for (int i = 0; i < SAMPLES / 10; i++) {
+            long ltMillis = nextLtMillis();
+            long boundary = ETime.nextBoundary(ltMillis, ETime.WINDOW_IN_MILLIS);
+            int slot = ETime.getTimeSlot(ltMillis);
+            assertEquals(slot, ETime.getTimeSlot(boundary - 1));
+            assertEquals(slot + 1, ETime.getTimeSlot(boundary));
+            assertEquals(0, ETime.getHour(boundary) % ETime.WINDOW_IN_HOUR);
+            assertEquals(0, ETime.getMinute(boundary));
+        }
+    }
+
+    private void assertBoundary(long ltMillis, long unit) {
+        long next = ETime.nextBoundary(ltMillis, unit);
+        assertTrue(next > ltMillis);
+        long etNext = ETime.toEtMillis(next);
+        long etBoundary = etNext - etNext % unit;
+        // next is the first LT millisecond at or after the first ET boundary after ltMillis
+        assertTrue(ETime.toEtMillis(next - 1) < etBoundary);
+        assertTrue(etBoundary > ETime.toEtMillis(ltMillis));
+        assertTrue(ETime.toEtMillis(ltMillis) >= etBoundary - unit);
+    }
+
+    private long nextLtMillis() {
+        return (mRandom.nextLong() >>> 1) % MAX_LT_MILLIS;
+    }
+
+    private static long exactEtMillis(long ltMillis) {
+        return BigInteger.valueOf(ltMillis).multiply(NUMERATOR).divide(DENOMINATOR).longValue();
+    }
+}
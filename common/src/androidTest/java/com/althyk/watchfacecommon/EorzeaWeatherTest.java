@@ -0,0 +1,136 @@
+package com.althyk.watchfacecommon;
+
+import android.test.AndroidTestCase;
+import android.util.JsonReader;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Checks EorzeaWeather against weather API responses recorded on the phone, and the rate tables
+ * against R.array.area_array.
+ *
+ * The fixtures are the files the WeatherFixtureRecorder test of the mobile app writes: run it
+ * after "adb shell setprop log.tag.WeatherFixture VERBOSE", pull
+ * /sdcard/Android/data/com.althyk.watchface/files/weather_fixtures and copy the files into
+ * src/androidTest/assets/weather_fixtures. Every area must appear in at least one of them. None
+ * are committed yet, so the check is skipped and the watch keeps the phone's forecast
+ * authoritative.
+ */
+public class EorzeaWeatherTest extends AndroidTestCase {
+    private static final String TAG = "EorzeaWeatherTest";
+
+    private static final String FIXTURE_DIR = "weather_fixtures";
+
+    public void testEveryAreaHasRates() {
+        String[] areas = getContext().getResources().getStringArray(R.array.area_array);
+        assertEquals(areas.length, EorzeaWeather.AREA_COUNT);
+        for (int slot = 0; slot < 3 * 10000; slot++) {
+            assertEquals(EorzeaWeather.NO_WEATHER, EorzeaWeather.getWeatherId(0, slot));
+            for (int area = 1; area < areas.length; area++) {
+                int weatherId = EorzeaWeather.getWeatherId(area, slot);
+                assertTrue(areas[area] + " at " + slot, weatherId > EorzeaWeather.NO_WEATHER
+                        && weatherId <= EorzeaWeather.AURORAS);
+            }
+        }
+    }
+
+    public void testChanceRange() {
+        for (int slot = 0; slot < 3 * 100000; slot++) {
+            int chance = EorzeaWeather.getChance(slot);
+            assertTrue(chance >= 0 && chance < 100);
+        }
+    }
+
+    public void testMatchesRecordedResponses() throws IOException {
+        String[] areas = getContext().getResources().getStringArray(R.array.area_array);
+        String[] files = getContext().getAssets().list(FIXTURE_DIR);
+        boolean[] covered = new boolean[areas.length];
+        int windows = 0;
+        for (String file : files) {
+            if (!file.endsWith(".json")) {
+                continue;
+            }
+            InputStream in = getContext().getAssets().open(FIXTURE_DIR + "/" + file);
+            JsonReader json = new JsonReader(new InputStreamReader(in, "UTF-8"));
+            try {
+                windows += checkFixture(file, json, areas, covered);
+            } finally {
+                json.close();
+            }
+        }
+        if (windows == 0) {
+            Log.w(TAG, "No recorded responses in assets/" + FIXTURE_DIR + ", skipped");
+            return;
+        }
+        for (int area = 1; area < areas.length; area++) {
+            assertTrue("No recorded weather for " + areas[area], covered[area]);
+        }
+    }
+
+    /** Checks every entry of a recorded response and returns the number checked. */
+    private static int checkFixture(String file, JsonReader json, String[] areas,
+            boolean[] covered) throws IOException {
+        long recordedAt = -1;
+        int checked = 0;
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if (name.equals("recordedAt")) {
+                recordedAt = json.nextLong();
+            } else if (name.equals("response")) {
+                assertTrue(file + ": recordedAt must come first", recordedAt >= 0);
+                int currentSlot = ETime.getTimeSlot(recordedAt);
+                json.beginObject();
+                while (json.hasNext()) {
+                    if (!json.nextName().equals("data")) {
+                        json.skipValue();
+                        continue;
+                    }
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        checkEntry(file, json, currentSlot, areas, covered);
+                        checked++;
+                    }
+                    json.endArray();
+                }
+                json.endObject();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        return checked;
+    }
+
+    private static void checkEntry(String file, JsonReader json, int currentSlot,
+            String[] areas, boolean[] covered) throws IOException {
+        int time = Integer.MIN_VALUE;
+        int area = Integer.MIN_VALUE;
+        int weather = Integer.MIN_VALUE;
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if (name.equals("time")) {
+                time = json.nextInt();
+            } else if (name.equals("area")) {
+                area = json.nextInt();
+            } else if (name.equals("weather")) {
+                weather = json.nextInt();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        assertTrue(file + ": incomplete entry", time != Integer.MIN_VALUE
+                && area != Integer.MIN_VALUE && weather != Integer.MIN_VALUE);
+        assertTrue(file + ": unknown area " + area, area > 0 && area < areas.length);
+
+        int slot = currentSlot + time;
+        assertEquals(file + ": " + areas[area] + " at window " + time, weather,
+                EorzeaWeather.getWeatherId(area, slot));
+        covered[area] = true;
+    }
+}
@@ -0,0 +1,120 @@
+package com.althyk.watchfacecommon;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+
+/**
+ * A Wearable API connection that succeeds or fails on demand. Each connect() reports its result
+ * to the WearableConnection on the handler, like GoogleApiClient does on the main thread, and is
+ * recorded with its uptime so that tests can check the delays between attempts.
+ */
+final class FakeWearableBackend implements WearableConnection.Backend {
+    private final Handler mHandler;
+    private WearableConnection mConnection;
+
+    // guarded by this
+    private boolean mFailConnects = false;
+    private boolean mConnected = false;
+    private boolean mConnecting = false;
+    private final ArrayList<Long> mConnectTimes = new ArrayList<>();
+    private int mDisconnectCount = 0;
+    private long mDisconnectTime = 0;
+
+    FakeWearableBackend(Handler handler) {
+        mHandler = handler;
+    }
+
+    void setConnection(WearableConnection connection) {
+        mConnection = connection;
+    }
+
+    synchronized void setFailConnects(boolean failConnects) {
+        mFailConnects = failConnects;
+    }
+
+    @Override
+    public synchronized void connect() {
+        mConnecting = true;
+        mConnectTimes.add(SystemClock.uptimeMillis());
+        notifyAll();
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                boolean fail;
+                synchronized (FakeWearableBackend.this) {
+                    mConnecting = false;
+                    mConnected = !mFailConnects;
+                    fail = mFailConnects;
+                }
+                if (fail) {
+                    mConnection.onConnectionFailed(null);
+                } else {
+                    mConnection.onConnected(null);
+                }
+            }
+        });
+    }
+
+    @Override
+    public synchronized void disconnect() {
+        mConnected = false;
+        mConnecting = false;
+        mDisconnectCount++;
+        mDisconnectTime = SystemClock.uptimeMillis();
+        notifyAll();
+    }
+
+    @Override
+    public synchronized boolean isConnected() {
+        return mConnected;
+    }
+
+    @Override
+    public synchronized boolean isConnecting() {
+        return mConnecting;
+    }
+
+    synchronized int getConnectCount() {
+        return mConnectTimes.size();
+    }
+
+    synchronized long getConnectTime(int index) {
+        return mConnectTimes.get(index);
+    }
+
+    synchronized int getDisconnectCount() {
+        return mDisconnectCount;
+    }
+
+    synchronized long getDisconnectTime() {
+        return mDisconnectTime;
+    }
+
+    /** Waits until connect() has been called count times. Returns false on timeout. */
+    synchronized boolean awaitConnects(int count, long timeoutMs) throws InterruptedException {
+        long deadline = SystemClock.uptimeMillis() + timeoutMs;
+        while (mConnectTimes.size() < count) {
+            long waitMs = deadline - SystemClock.uptimeMillis();
+            if (waitMs <= 0) {
+                return false;
+            }
+            wait(waitMs);
+        }
+        return true;
+    }
+
+    /** Waits until disconnect() has been called count times. Returns false on timeout. */
+    synchronized boolean awaitDisconnects(int count, long timeoutMs) throws InterruptedException {
+        long deadline = SystemClock.uptimeMillis() + timeoutMs;
+        while (mDisconnectCount < count) {
+            long waitMs = deadline - SystemClock.uptimeMillis();
+            if (waitMs <= 0) {
+                return false;
+            }
+            wait(waitMs);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,124 @@
+package com.althyk.watchfacecommon;
+
+import android.util.Log;
+
+import com.google.android.gms.wearable.DataMap;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+
+/**
+ * Compares the packed forecast with the DataMap list it replaced, as the phone sends them: the
+ * message size, and the time to decode a message and read every entry on the watch. Measured for
+ * every area (24 areas * 5 windows) and for one area. Results are logged under the tag
+ * "Benchmark".
+ */
+public class ForecastCodecBenchmark extends TestCase {
+    private static final String TAG = "Benchmark";
+
+    private static final int AREAS = 24;
+    private static final int WARMUP = 500;
+    private static final int ITERATIONS = 2000;
+
+    public void testAllAreas() {
+        measure("all areas", 1, AREAS);
+    }
+
+    public void testOneArea() {
+        measure("one area", 5, 5);
+    }
+
+    private static void measure(String name, int firstArea, int lastArea) {
+        ETime etime = new ETime().setLtMillis(1420070400000L).generateStartET();
+        byte[] dataMapMessage = buildDataMapMessage(etime, firstArea, lastArea);
+        byte[] packedMessage = buildPackedMessage(etime, firstArea, lastArea);
+
+        decodeDataMap(dataMapMessage, WARMUP);
+        decodePacked(packedMessage, WARMUP);
+        long start = System.nanoTime();
+        long dataMapResult = decodeDataMap(dataMapMessage, ITERATIONS);
+        long dataMapNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        long packedResult = decodePacked(packedMessage, ITERATIONS);
+        long packedNanos = System.nanoTime() - start;
+
+        assertEquals(dataMapResult, packedResult);
+        assertTrue(packedMessage.length < dataMapMessage.length);
+        Log.i(TAG, "Forecast of " + name + ": DataMap list " + dataMapMessage.length
+                + " bytes, decode " + dataMapNanos / ITERATIONS + " ns/op; packed "
+                + packedMessage.length + " bytes, decode " + packedNanos / ITERATIONS + " ns/op");
+    }
+
+    /** The KEY_WEATHER_LIST layout of the phone's buildWeatherList(). */
+    private static byte[] buildDataMapMessage(ETime etime, int firstArea, int lastArea) {
+        ArrayList<DataMap> dataMapList = new ArrayList<>();
+        for (int time = -1; time <= 3; time++) {
+            ETime window = new ETime().setEtMillis(etime.time + ETime.HOUR_IN_MILLIS * 8 * time);
+            for (int area = firstArea; area <= lastArea; area++) {
+                DataMap dataMap = new DataMap();
+                dataMap.putInt(DataSyncUtil.KEY_WEATHER_ID, weatherId(area, time));
+                dataMap.putInt(DataSyncUtil.KEY_WEATHER_AREA, area);
+                dataMap.putInt(DataSyncUtil.KEY_WEATHER_YEAR, window.year);
+                dataMap.putInt(DataSyncUtil.KEY_WEATHER_MONTH, window.month);
+                dataMap.putInt(DataSyncUtil.KEY_WEATHER_DAY, window.day);
+                dataMap.putInt(DataSyncUtil.KEY_WEATHER_HOUR, window.hour);
+                dataMapList.add(dataMap);
+            }
+        }
+        DataMap dataMap = new DataMap();
+        dataMap.putDataMapArrayList(DataSyncUtil.KEY_WEATHER_LIST, dataMapList);
+        return dataMap.toByteArray();
+    }
+
+    private static byte[] buildPackedMessage(ETime etime, int firstArea, int lastArea) {
+        int baseSlot = etime.getTimeSlot();
+        ForecastCodec.Writer writer = new ForecastCodec.Writer(baseSlot,
+                DataSyncUtil.FORECAST_WINDOWS * (lastArea - firstArea + 1));
+        for (int time = -1; time <= 3; time++) {
+            for (int area = firstArea; area <= lastArea; area++) {
+                writer.add(baseSlot + time, area, weatherId(area, time));
+            }
+        }
+        DataMap dataMap = new DataMap();
+        dataMap.putByteArray(DataSyncUtil.KEY_WEATHER_PACKED, writer.toByteArray());
+        return dataMap.toByteArray();
+    }
+
+    private static long decodeDataMap(byte[] message, int iterations) {
+        long sum = 0;
+        for (int i = 0; i < iterations; i++) {
+            ArrayList<DataMap> weatherList = DataMap.fromByteArray(message)
+                    .getDataMapArrayList(DataSyncUtil.KEY_WEATHER_LIST);
+            for (DataMap weather : weatherList) {
+                int slot = ETime.getTimeSlot(
+                        weather.getInt(DataSyncUtil.KEY_WEATHER_YEAR),
+                        weather.getInt(DataSyncUtil.KEY_WEATHER_MONTH),
+                        weather.getInt(DataSyncUtil.KEY_WEATHER_DAY),
+                        weather.getInt(DataSyncUtil.KEY_WEATHER_HOUR));
+                sum += slot + weather.getInt(DataSyncUtil.KEY_WEATHER_AREA)
+                        + weather.getInt(DataSyncUtil.KEY_WEATHER_ID);
+            }
+        }
+        return sum;
+    }
+
+    private static long decodePacked(byte[] message, int iterations) {
+        long sum = 0;
+        for (int i = 0; i < iterations; i++) {
+            byte[] packed = DataMap.fromByteArray(message)
+                    .getByteArray(DataSyncUtil.KEY_WEATHER_PACKED);
+            assertTrue(ForecastCodec.isValid(packed));
+            int count = ForecastCodec.getCount(packed);
+            for (int j = 0; j < count; j++) {
+                sum += ForecastCodec.getSlot(packed, j) + ForecastCodec.getArea(packed, j)
+                        + ForecastCodec.getWeatherId(packed, j);
+            }
+        }
+        return sum;
+    }
+
+    private static int weatherId(int area, int time) {
+        return (area * 7 + time + 7) % 14 + 1;
+    }
+}
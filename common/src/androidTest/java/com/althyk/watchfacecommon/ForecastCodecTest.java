@@ -0,0 +1,120 @@
+package com.althyk.watchfacecommon;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Round trips through ForecastCodec and validation of malformed data.
+ */
+public class ForecastCodecTest extends TestCase {
+
+    public void testRoundTrip() {
+        int baseSlot = ETime.getTimeSlot(1420070400000L); // 2015-01-01 UTC
+        byte[] data = new ForecastCodec.Writer(baseSlot, 3)
+                .add(baseSlot - 1, 1, 2)
+                .add(baseSlot, 24, 14)
+                .add(baseSlot + 3, 255, 255)
+                .toByteArray();
+
+        assertTrue(ForecastCodec.isValid(data));
+        assertEquals(7 + 3 * 3, data.length);
+        assertEquals(baseSlot, ForecastCodec.getBaseSlot(data));
+        assertEquals(3, ForecastCodec.getCount(data));
+        assertEntry(data, 0, baseSlot - 1, 1, 2);
+        assertEntry(data, 1, baseSlot, 24, 14);
+        assertEntry(data, 2, baseSlot + 3, 255, 255);
+    }
+
+    public void testRandomRoundTrips() {
+        Random random = new Random(42);
+        for (int n = 0; n < 1000; n++) {
+            int baseSlot = random.nextInt();
+            int count = random.nextInt(300);
+            int[] slots = new int[count];
+            int[] areas = new int[count];
+            int[] weatherIds = new int[count];
+            // a small expected count, so the writer has to grow
+            ForecastCodec.Writer writer = new ForecastCodec.Writer(baseSlot, random.nextInt(8));
+            for (int i = 0; i < count; i++) {
+                slots[i] = baseSlot + random.nextInt(256) - 128;
+                areas[i] = random.nextInt(256);
+                weatherIds[i] = random.nextInt(256);
+                writer.add(slots[i], areas[i], weatherIds[i]);
+            }
+            byte[] data = writer.toByteArray();
+
+            assertTrue(ForecastCodec.isValid(data));
+            assertEquals(baseSlot, ForecastCodec.getBaseSlot(data));
+            assertEquals(count, ForecastCodec.getCount(data));
+            for (int i = 0; i < count; i++) {
+                assertEntry(data, i, slots[i], areas[i], weatherIds[i]);
+            }
+        }
+    }
+
+    public void testEmpty() {
+        byte[] data = new ForecastCodec.Writer(0, 0).toByteArray();
+        assertTrue(ForecastCodec.isValid(data));
+        assertEquals(0, ForecastCodec.getCount(data));
+    }
+
+    public void testSlotRange() {
+        ForecastCodec.Writer writer = new ForecastCodec.Writer(1000, 2);
+        writer.add(1000 - 128, 1, 1).add(1000 + 127, 1, 1);
+        try {
+            writer.add(1000 - 129, 1, 1);
+            fail("slot below the range");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            writer.add(1000 + 128, 1, 1);
+            fail("slot above the range");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(2, ForecastCodec.getCount(writer.toByteArray()));
+    }
+
+    public void testMaxEntries() {
+        ForecastCodec.Writer writer = new ForecastCodec.Writer(0, 0);
+        for (int i = 0; i < 0xffff; i++) {
+            writer.add(0, i & 0xff, 1);
+        }
+        try {
+            writer.add(0, 1, 1);
+            fail("too many entries");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        byte[] data = writer.toByteArray();
+        assertTrue(ForecastCodec.isValid(data));
+        assertEquals(0xffff, ForecastCodec.getCount(data));
+    }
+
+    public void testInvalid() {
+        byte[] data = new ForecastCodec.Writer(5, 2).add(5, 1, 2).add(6, 1, 3).toByteArray();
+        assertFalse(ForecastCodec.isValid(null));
+        assertFalse(ForecastCodec.isValid(new byte[0]));
+        assertFalse(ForecastCodec.isValid(new byte[6]));
+
+        byte[] truncated = new byte[data.length - 1];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        assertFalse(ForecastCodec.isValid(truncated));
+
+        byte[] trailing = new byte[data.length + 3];
+        System.arraycopy(data, 0, trailing, 0, data.length);
+        assertFalse(ForecastCodec.isValid(trailing));
+
+        byte[] version = data.clone();
+        version[0] = (byte) (ForecastCodec.VERSION + 1);
+        assertFalse(ForecastCodec.isValid(version));
+    }
+
+    private static void assertEntry(byte[] data, int index, int slot, int area, int weatherId) {
+        assertEquals("slot " + index, slot, ForecastCodec.getSlot(data, index));
+        assertEquals("area " + index, area, ForecastCodec.getArea(data, index));
+        assertEquals("weather " + index, weatherId, ForecastCodec.getWeatherId(data, index));
+    }
+}
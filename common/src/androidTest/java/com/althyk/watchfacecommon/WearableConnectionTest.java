@@ -0,0 +1,161 @@
+package com.althyk.watchfacecommon;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WearableConnection on a FakeWearableBackend, with short delays: the reference count, the idle
+ * disconnect and the reconnect backoff.
+ */
+public class WearableConnectionTest extends TestCase {
+    private static final long IDLE_DISCONNECT_MS = 200;
+    private static final long MIN_RECONNECT_BACKOFF_MS = 50;
+    private static final long MAX_RECONNECT_BACKOFF_MS = 200;
+    private static final long TIMEOUT_MS = 5000;
+
+    private HandlerThread mThread;
+    private Handler mHandler;
+    private FakeWearableBackend mBackend;
+    private WearableConnection mConnection;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mThread = new HandlerThread("WearableConnectionTest");
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+        mBackend = new FakeWearableBackend(mHandler);
+        mConnection = new WearableConnection(null, mBackend, mHandler,
+                IDLE_DISCONNECT_MS, MIN_RECONNECT_BACKOFF_MS, MAX_RECONNECT_BACKOFF_MS);
+        mBackend.setConnection(mConnection);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mThread.quit();
+        super.tearDown();
+    }
+
+    public void testRefCount() throws Exception {
+        mConnection.acquire();
+        mConnection.acquire();
+        awaitConnected();
+        assertEquals(1, mBackend.getConnectCount());
+
+        mConnection.release();
+        SystemClock.sleep(IDLE_DISCONNECT_MS * 3);
+        assertEquals("disconnected while held", 0, mBackend.getDisconnectCount());
+        assertTrue(mConnection.isConnected());
+
+        mConnection.release();
+        assertTrue(mBackend.awaitDisconnects(1, TIMEOUT_MS));
+
+        try {
+            mConnection.release();
+            fail("release() without acquire() should throw");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    public void testIdleDisconnect() throws Exception {
+        mConnection.acquire();
+        awaitConnected();
+        long releaseTime = SystemClock.uptimeMillis();
+        mConnection.release();
+        assertTrue(mBackend.awaitDisconnects(1, TIMEOUT_MS));
+        assertTrue(mBackend.getDisconnectTime() - releaseTime >= IDLE_DISCONNECT_MS);
+
+        // acquiring again within the idle delay keeps the connection
+        mConnection.acquire();
+        awaitConnected();
+        mConnection.release();
+        SystemClock.sleep(IDLE_DISCONNECT_MS / 2);
+        mConnection.acquire();
+        SystemClock.sleep(IDLE_DISCONNECT_MS * 2);
+        assertEquals(1, mBackend.getDisconnectCount());
+        assertEquals(2, mBackend.getConnectCount());
+        mConnection.release();
+        assertTrue(mBackend.awaitDisconnects(2, TIMEOUT_MS));
+
+        // so does a queued callback, until it is cancelled
+        mBackend.setFailConnects(true);
+        WearableConnection.Callback callback = new WearableConnection.Callback() {
+            @Override
+            public void onConnected(GoogleApiClient client) {
+            }
+        };
+        mConnection.whenConnected(callback);
+        assertEquals(1, mConnection.getQueueDepth());
+        SystemClock.sleep(IDLE_DISCONNECT_MS * 2);
+        assertEquals(2, mBackend.getDisconnectCount());
+        mConnection.cancel(callback);
+        assertEquals(0, mConnection.getQueueDepth());
+        assertTrue(mBackend.awaitDisconnects(3, TIMEOUT_MS));
+    }
+
+    public void testBackoff() throws Exception {
+        mBackend.setFailConnects(true);
+        mConnection.acquire();
+        assertTrue(mBackend.awaitConnects(5, TIMEOUT_MS));
+        long backoffMs = MIN_RECONNECT_BACKOFF_MS;
+        for (int i = 1; i < 5; i++) {
+            long delayMs = mBackend.getConnectTime(i) - mBackend.getConnectTime(i - 1);
+            assertTrue("attempt " + i + " after " + delayMs + "ms", delayMs >= backoffMs);
+            backoffMs = Math.min(backoffMs * 2, MAX_RECONNECT_BACKOFF_MS);
+        }
+
+        // neither whenConnected() nor acquire() cuts the backoff short
+        drainHandler();
+        int attempts = mBackend.getConnectCount();
+        long lastAttemptTime = mBackend.getConnectTime(attempts - 1);
+        LatchCallback callback = new LatchCallback();
+        mConnection.whenConnected(callback);
+        mConnection.acquire();
+        assertEquals(attempts, mBackend.getConnectCount());
+
+        mBackend.setFailConnects(false);
+        assertTrue(callback.mLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(attempts + 1, mBackend.getConnectCount());
+        assertTrue(mBackend.getConnectTime(attempts) - lastAttemptTime
+                >= MAX_RECONNECT_BACKOFF_MS);
+
+        mConnection.release();
+        mConnection.release();
+        assertTrue(mBackend.awaitDisconnects(1, TIMEOUT_MS));
+    }
+
+    private void awaitConnected() throws InterruptedException {
+        LatchCallback callback = new LatchCallback();
+        mConnection.whenConnected(callback);
+        assertTrue("not connected", callback.mLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    }
+
+    /** Waits for the results the backend has posted so far. */
+    private void drainHandler() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    }
+
+    private static final class LatchCallback implements WearableConnection.Callback {
+        final CountDownLatch mLatch = new CountDownLatch(1);
+
+        @Override
+        public void onConnected(GoogleApiClient client) {
+            mLatch.countDown();
+        }
+    }
+}
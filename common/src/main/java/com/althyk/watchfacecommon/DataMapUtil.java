@@ -1,6 +1,8 @@
 package com.althyk.watchfacecommon;
 
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import com.google.android.gms.common.api.GoogleApiClient;
@@ -13,57 +15,128 @@ import com.google.android.gms.wearable.NodeApi;
 import com.google.android.gms.wearable.PutDataMapRequest;
 import com.google.android.gms.wearable.Wearable;
 
+import java.util.HashMap;
+
+/**
+ * Reads and writes the DataItems of the local node.
+ *
+ * The local node id is resolved once and cached. The last fetched or written DataMap of each
+ * path is kept as a write-back view: only this process writes the local node's items, so the view
+ * stays current and an overwrite doesn't have to read the item again. Overwrites of the same path
+ * within COALESCE_WINDOW_MS are merged into a single putDataItem, which is skipped when it wouldn't
+ * change the item.
+ * Every Wearable API call is counted in MetricsRecorder.COUNTER_DATA_ROUND_TRIPS.
+ */
 public final class DataMapUtil {
     private static final String TAG = "DataMapUtil";
 
+    private static final long COALESCE_WINDOW_MS = 100;
+    private static final long FLUSH_RETRY_DELAY_MS = 5000;
+    private static final int MAX_FLUSH_ATTEMPTS = 3;
+
+    private static final Object sLock = new Object();
+    private static volatile String sLocalNodeId;
+    // guarded by sLock
+    private static final HashMap<String, DataMap> sViews = new HashMap<>();
+    private static final HashMap<String, DataMap> sPendingOverwrites = new HashMap<>();
+    private static Handler sHandler;
+
     public interface FetchDataMapCallback {
         void onDataMapFetched(DataMap config);
     }
 
+    public interface FetchFailedCallback {
+        void onFetchFailed();
+    }
+
+    public static void fetchDataMap(GoogleApiClient googleApiClient,
+                                    String path,
+                                    FetchDataMapCallback callback) {
+        fetchDataMap(googleApiClient, path, callback, null);
+    }
+
+    /** Like fetchDataMap(), and calls failedCallback (if not null) when the read fails. */
     public static void fetchDataMap(final GoogleApiClient googleApiClient,
                                     final String path,
-                                    final FetchDataMapCallback callback) {
+                                    final FetchDataMapCallback callback,
+                                    final FetchFailedCallback failedCallback) {
+        String localNodeId = sLocalNodeId;
+        if (localNodeId != null) {
+            getDataItem(googleApiClient, localNodeId, path, callback, failedCallback);
+            return;
+        }
+
+        MetricsRecorder.increment(MetricsRecorder.COUNTER_DATA_ROUND_TRIPS);
         Wearable.NodeApi.getLocalNode(googleApiClient).setResultCallback(
                 new ResultCallback<NodeApi.GetLocalNodeResult>() {
                     @Override
                     public void onResult(NodeApi.GetLocalNodeResult getLocalNodeResult) {
-                        String localNode = getLocalNodeResult.getNode().getId();
-                        Uri uri = new Uri.Builder()
-                                .scheme("wear")
-                                .path(path)
-                                .authority(localNode)
-                                .build();
-                        Wearable.DataApi.getDataItem(googleApiClient, uri)
-                                .setResultCallback(new DataItemResultCallback(callback));
+                        if (!getLocalNodeResult.getStatus().isSuccess()) {
+                            Log.e(TAG, "Failed to get the local node");
+                            if (failedCallback != null) {
+                                failedCallback.onFetchFailed();
+                            }
+                            return;
+                        }
+                        String localNodeId = getLocalNodeResult.getNode().getId();
+                        sLocalNodeId = localNodeId;
+                        getDataItem(googleApiClient, localNodeId, path, callback, failedCallback);
                     }
                 }
         );
     }
 
+    /**
+     * Overwrites some keys of the DataItem of path. Overwrites that arrive within
+     * COALESCE_WINDOW_MS are merged (later values win) and written with one putDataItem.
+     */
     public static void overwriteKeysInDataMap(final GoogleApiClient googleApiClient,
                                               final String path,
                                               final DataMap dataMapToOverwrite) {
+        synchronized (sLock) {
+            DataMap pending = sPendingOverwrites.get(path);
+            if (pending != null) {
+                pending.putAll(dataMapToOverwrite);
+                MetricsRecorder.increment(MetricsRecorder.COUNTER_DATA_COALESCED);
+                return;
+            }
+            pending = new DataMap();
+            pending.putAll(dataMapToOverwrite);
+            sPendingOverwrites.put(path, pending);
 
-        DataMapUtil.fetchDataMap(googleApiClient,
-                path,
-                new FetchDataMapCallback() {
-                    @Override
-                    public void onDataMapFetched(DataMap currentDataMap) {
-                        DataMap overwrittenDataMap = new DataMap();
-                        overwrittenDataMap.putAll(currentDataMap);
-                        overwrittenDataMap.putAll(dataMapToOverwrite);
-                        DataMapUtil.putDataItem(googleApiClient, path, overwrittenDataMap);
-                    }
-                }
-        );
+            if (sHandler == null) {
+                sHandler = new Handler(Looper.getMainLooper());
+            }
+        }
+
+        postFlush(googleApiClient, path, 1, COALESCE_WINDOW_MS);
+    }
+
+    /**
+     * Returns a copy of the last fetched or written DataMap of path, or null if there is none.
+     * This doesn't call the Wearable API.
+     */
+    public static DataMap getCachedDataMap(String path) {
+        synchronized (sLock) {
+            DataMap view = sViews.get(path);
+            if (view == null) {
+                return null;
+            }
+            DataMap copy = new DataMap();
+            copy.putAll(view);
+            return copy;
+        }
     }
 
     public static void putDataItem(GoogleApiClient googleApiClient,
-                                   String path,
+                                   final String path,
                                    DataMap newDataMap) {
         PutDataMapRequest putDataMapRequest = PutDataMapRequest.create(path);
         DataMap configToPut = putDataMapRequest.getDataMap();
         configToPut.putAll(newDataMap);
+        updateView(path, configToPut);
+
+        MetricsRecorder.increment(MetricsRecorder.COUNTER_DATA_ROUND_TRIPS);
         Wearable.DataApi.putDataItem(googleApiClient, putDataMapRequest.asPutDataRequest())
                 .setResultCallback(new ResultCallback<DataApi.DataItemResult>() {
                     @Override
@@ -71,16 +144,116 @@ public final class DataMapUtil {
                         if (Log.isLoggable(TAG, Log.DEBUG)) {
                             Log.d(TAG, "putDataItem result status: " + dataItemResult.getStatus());
                         }
+                        if (!dataItemResult.getStatus().isSuccess()) {
+                            // the item may not hold what the view says, read it again next time
+                            synchronized (sLock) {
+                                sViews.remove(path);
+                            }
+                        }
                     }
                 });
     }
 
+    private static void getDataItem(GoogleApiClient googleApiClient,
+                                    String localNodeId,
+                                    String path,
+                                    FetchDataMapCallback callback,
+                                    FetchFailedCallback failedCallback) {
+        Uri uri = new Uri.Builder()
+                .scheme("wear")
+                .path(path)
+                .authority(localNodeId)
+                .build();
+        MetricsRecorder.increment(MetricsRecorder.COUNTER_DATA_ROUND_TRIPS);
+        Wearable.DataApi.getDataItem(googleApiClient, uri)
+                .setResultCallback(new DataItemResultCallback(path, callback, failedCallback));
+    }
+
+    private static void postFlush(final GoogleApiClient googleApiClient, final String path,
+                                  final int attempt, long delayMs) {
+        sHandler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                flushOverwrite(googleApiClient, path, attempt);
+            }
+        }, delayMs);
+    }
+
+    private static void flushOverwrite(final GoogleApiClient googleApiClient, final String path,
+                                       final int attempt) {
+        DataMap view;
+        synchronized (sLock) {
+            view = sViews.get(path);
+        }
+        if (view != null) {
+            applyOverwrite(googleApiClient, path, view);
+            return;
+        }
+
+        fetchDataMap(googleApiClient, path, new FetchDataMapCallback() {
+            @Override
+            public void onDataMapFetched(DataMap currentDataMap) {
+                applyOverwrite(googleApiClient, path, currentDataMap);
+            }
+        }, new FetchFailedCallback() {
+            @Override
+            public void onFetchFailed() {
+                // the pending overwrite must not stay behind, or later overwrites of the path
+                // would merge into it and never be flushed
+                if (attempt < MAX_FLUSH_ATTEMPTS) {
+                    postFlush(googleApiClient, path, attempt + 1, FLUSH_RETRY_DELAY_MS);
+                    return;
+                }
+                synchronized (sLock) {
+                    sPendingOverwrites.remove(path);
+                }
+                Log.e(TAG, "Dropped the overwrite of " + path + " after " + attempt
+                        + " failed reads");
+            }
+        });
+    }
+
+    private static void applyOverwrite(GoogleApiClient googleApiClient,
+                                       String path,
+                                       DataMap currentDataMap) {
+        DataMap pending;
+        synchronized (sLock) {
+            // overwrites that arrived while the item was read are written together
+            pending = sPendingOverwrites.remove(path);
+        }
+        if (pending == null) {
+            return;
+        }
+        DataMap overwrittenDataMap = new DataMap();
+        overwrittenDataMap.putAll(currentDataMap);
+        overwrittenDataMap.putAll(pending);
+        if (overwrittenDataMap.equals(currentDataMap)) {
+            // nothing changes, so skip the write and the data events it would fire
+            MetricsRecorder.increment(MetricsRecorder.COUNTER_DATA_WRITES_SKIPPED);
+            return;
+        }
+        putDataItem(googleApiClient, path, overwrittenDataMap);
+    }
+
+    private static void updateView(String path, DataMap dataMap) {
+        DataMap view = new DataMap();
+        view.putAll(dataMap);
+        synchronized (sLock) {
+            sViews.put(path, view);
+        }
+    }
+
     private static class DataItemResultCallback implements ResultCallback<DataApi.DataItemResult> {
 
+        private final String mPath;
         private final FetchDataMapCallback mCallback;
+        private final FetchFailedCallback mFailedCallback;
 
-        public DataItemResultCallback(FetchDataMapCallback callback) {
+        public DataItemResultCallback(String path, FetchDataMapCallback callback,
+                                      FetchFailedCallback failedCallback) {
+            mPath = path;
             mCallback = callback;
+            mFailedCallback = failedCallback;
         }
 
         @Override
@@ -90,10 +263,16 @@ public final class DataMapUtil {
                     DataItem dataItem = dataItemResult.getDataItem();
                     DataMapItem dataMapItem = DataMapItem.fromDataItem(dataItem);
                     DataMap dataMap = dataMapItem.getDataMap();
+                    updateView(mPath, dataMap);
                     mCallback.onDataMapFetched(dataMap);
                 } else {
                     mCallback.onDataMapFetched(new DataMap());
                 }
+            } else {
+                Log.e(TAG, "Failed to get " + mPath + ": " + dataItemResult.getStatus());
+                if (mFailedCallback != null) {
+                    mFailedCallback.onFetchFailed();
+                }
             }
         }
     }
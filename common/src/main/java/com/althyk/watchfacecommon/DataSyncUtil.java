@@ -1,13 +1,19 @@
 package com.althyk.watchfacecommon;
 
+import com.google.android.gms.wearable.DataMap;
+
 public final class DataSyncUtil {
     // PATH
     public static final String PATH_REQUEST_FETCH = "/request/fetch";
     public static final String PATH_DATA_WEATHER  = "/data/weather";
     public static final String PATH_DATA_AREA     = "/data/area";
+    public static final String PATH_DEBUG_METRICS      = "/debug/metrics";
+    public static final String PATH_DEBUG_METRICS_DUMP = "/debug/metrics/dump";
 
     // KEY
     public static final String KEY_WEATHER_LIST  = "KEY_WEATHER_LIST";
+    public static final String KEY_WEATHER_PACKED = "KEY_WEATHER_PACKED"; // ForecastCodec
+    public static final String KEY_WIRE_FORMAT   = "KEY_WIRE_FORMAT";
     // KEY for weather item
     public static final String KEY_WEATHER_ID    = "KEY_WEATHER_ID";
     public static final String KEY_WEATHER_AREA  = "KEY_WEATHER_AREA";
@@ -15,4 +21,66 @@ public final class DataSyncUtil {
     public static final String KEY_WEATHER_MONTH = "KEY_WEATHER_MONTH";
     public static final String KEY_WEATHER_DAY   = "KEY_WEATHER_DAY";
     public static final String KEY_WEATHER_HOUR  = "KEY_WEATHER_HOUR";
+    // KEY for debug metrics
+    public static final String KEY_METRICS_ENABLED = "KEY_METRICS_ENABLED";
+    public static final String KEY_METRICS_RESET   = "KEY_METRICS_RESET";
+    public static final String KEY_METRICS_DUMP    = "KEY_METRICS_DUMP";
+
+    // weather windows [-1, 3] of one area in a forecast
+    public static final int FORECAST_WINDOWS = 5;
+    // KEY_WEATHER_AREA of a fetch request that subscribes to every area
+    public static final int AREA_ALL = -1;
+
+    // wire format of the weather data
+    public static final int WIRE_FORMAT_DATA_MAP = 0; // KEY_WEATHER_LIST of DataMaps
+    public static final int WIRE_FORMAT_PACKED   = ForecastCodec.VERSION; // KEY_WEATHER_PACKED
+
+    /** Adds the newest wire format this side can read to a fetch request. */
+    public static void putSupportedWireFormat(DataMap request) {
+        request.putInt(KEY_WIRE_FORMAT, WIRE_FORMAT_PACKED);
+    }
+
+    /**
+     * Returns the wire format to answer a fetch request with. Requests without a format come
+     * from watches that only read the DataMap layout.
+     */
+    public static int negotiateWireFormat(DataMap request) {
+        if (request == null) {
+            return WIRE_FORMAT_DATA_MAP;
+        }
+        return Math.min(request.getInt(KEY_WIRE_FORMAT, WIRE_FORMAT_DATA_MAP), WIRE_FORMAT_PACKED);
+    }
+
+    /** Adds the area the watch shows to a fetch request, so the phone only sends that area. */
+    public static void putSubscribedArea(DataMap request, int area) {
+        request.putInt(KEY_WEATHER_AREA, area);
+    }
+
+    /** Returns the area a fetch request subscribes to, or AREA_ALL for older watches. */
+    public static int getSubscribedArea(DataMap request) {
+        if (request == null) {
+            return AREA_ALL;
+        }
+        return request.getInt(KEY_WEATHER_AREA, AREA_ALL);
+    }
+
+    /** Returns the path of the weather DataItem of one area, e.g. "/data/weather/3". */
+    public static String getWeatherPath(int area) {
+        return PATH_DATA_WEATHER + "/" + area;
+    }
+
+    /** Returns the area of a path made by getWeatherPath(), or AREA_ALL for any other path. */
+    public static int getAreaOfWeatherPath(String path) {
+        String prefix = PATH_DATA_WEATHER + "/";
+        if (path == null || !path.startsWith(prefix)) {
+            return AREA_ALL;
+        }
+        try {
+            return Integer.parseInt(path.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return AREA_ALL;
+        }
+    }
+
+    private DataSyncUtil() { }
 }
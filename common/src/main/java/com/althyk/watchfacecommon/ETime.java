@@ -4,6 +4,9 @@ public class ETime {
     private static final String TAG = "ETime";
 
     public static final double L_E_TIME_RATE = 3600.0 / 175;
+    // L_E_TIME_RATE = 144 / 7, used for exact integer conversion
+    public static final long L_E_TIME_NUMERATOR   = 144;
+    public static final long L_E_TIME_DENOMINATOR = 7;
 
     public static final long SECOND_IN_MILLIS = 1000;
     public static final long MINUTE_IN_SECOND = 60;
@@ -11,8 +14,10 @@ public class ETime {
     public static final long DAY_IN_HOUR      = 24;
     public static final long MONTH_IN_DAY     = 32;
     public static final long YEAR_IN_MONTH    = 12;
+    public static final long WINDOW_IN_HOUR   = 8; // weather changes every 8 hours
     public static final long MINUTE_IN_MILLIS = SECOND_IN_MILLIS * MINUTE_IN_SECOND;
     public static final long HOUR_IN_MILLIS   = MINUTE_IN_MILLIS * HOUR_IN_MINUTE;
+    public static final long WINDOW_IN_MILLIS = HOUR_IN_MILLIS * WINDOW_IN_HOUR;
     public static final long DAY_IN_MILLIS    = HOUR_IN_MILLIS * DAY_IN_HOUR;
     public static final long MONTH_IN_MILLIS  = DAY_IN_MILLIS * MONTH_IN_DAY;
     public static final long YEAR_IN_MILLIS   = MONTH_IN_MILLIS * YEAR_IN_MONTH;
@@ -23,7 +28,7 @@ public class ETime {
     public int hour;
     public int minute;
     public int second;
-    public double time;
+    public long time;
 
     public ETime() {
         this.year = 0;
@@ -32,22 +37,22 @@ public class ETime {
         this.hour = 0;
         this.minute = 0;
         this.second = 0;
-        this.time = 0.0;
+        this.time = 0;
     }
 
-    public ETime setEtMillis(double etMillis) {
+    public ETime setEtMillis(long etMillis) {
         this.time   = etMillis;
-        this.year   = (int) (Math.floor(this.time / YEAR_IN_MILLIS));
-        this.month  = (int) (Math.floor(this.time / MONTH_IN_MILLIS)  % YEAR_IN_MONTH);
-        this.day    = (int) (Math.floor(this.time / DAY_IN_MILLIS)    % MONTH_IN_DAY);
-        this.hour   = (int) (Math.floor(this.time / HOUR_IN_MILLIS)   % DAY_IN_HOUR);
-        this.minute = (int) (Math.floor(this.time / MINUTE_IN_MILLIS) % HOUR_IN_MINUTE);
-        this.second = (int) (Math.floor(this.time / SECOND_IN_MILLIS) % MINUTE_IN_SECOND);
+        this.year   = (int) (etMillis / YEAR_IN_MILLIS);
+        this.month  = (int) (etMillis / MONTH_IN_MILLIS  % YEAR_IN_MONTH);
+        this.day    = (int) (etMillis / DAY_IN_MILLIS    % MONTH_IN_DAY);
+        this.hour   = (int) (etMillis / HOUR_IN_MILLIS   % DAY_IN_HOUR);
+        this.minute = (int) (etMillis / MINUTE_IN_MILLIS % HOUR_IN_MINUTE);
+        this.second = (int) (etMillis / SECOND_IN_MILLIS % MINUTE_IN_SECOND);
         return this;
     }
 
     public ETime setLtMillis(long ltMillis) {
-        return setEtMillis(ltMillis * L_E_TIME_RATE);
+        return setEtMillis(toEtMillis(ltMillis));
     }
 
     public ETime setToNow() {
@@ -55,14 +60,60 @@ public class ETime {
     }
 
     public ETime generateStartET() {
-        double diffMillis = this.time % SECOND_IN_MILLIS +
-                SECOND_IN_MILLIS * this.second +
-                MINUTE_IN_MILLIS * this.minute +
-                HOUR_IN_MILLIS * (this.hour % 8);
-        return new ETime().setEtMillis(this.time - diffMillis);
+        return new ETime().setEtMillis(getStartEtMillis());
     }
 
-    // year-month-day-hour
+    // start of the current 8 hour weather window, without allocating a new ETime
+    public long getStartEtMillis() {
+        return this.time - this.time % WINDOW_IN_MILLIS;
+    }
+
+    /*
+     * Static, allocation-free conversions from LT millis.
+     * They use exact integer arithmetic, so there is no drift however large ltMillis gets.
+     */
+
+    public static long toEtMillis(long ltMillis) {
+        return ltMillis * L_E_TIME_NUMERATOR / L_E_TIME_DENOMINATOR;
+    }
+
+    // the first LT millis whose ET time is at or after etMillis
+    public static long toLtMillis(long etMillis) {
+        return (etMillis * L_E_TIME_DENOMINATOR + L_E_TIME_NUMERATOR - 1) / L_E_TIME_NUMERATOR;
+    }
+
+    public static int getHour(long ltMillis) {
+        return (int) (toEtMillis(ltMillis) / HOUR_IN_MILLIS % DAY_IN_HOUR);
+    }
+
+    public static int getMinute(long ltMillis) {
+        return (int) (toEtMillis(ltMillis) / MINUTE_IN_MILLIS % HOUR_IN_MINUTE);
+    }
+
+    public static int getTimeSlot(long ltMillis) {
+        return (int) (toEtMillis(ltMillis) / WINDOW_IN_MILLIS);
+    }
+
+    /**
+     * Returns the LT millis of the next ET boundary strictly after ltMillis.
+     * unitInEtMillis is the ET unit, e.g. MINUTE_IN_MILLIS, HOUR_IN_MILLIS or WINDOW_IN_MILLIS.
+     */
+    public static long nextBoundary(long ltMillis, long unitInEtMillis) {
+        long next = (toEtMillis(ltMillis) / unitInEtMillis + 1) * unitInEtMillis;
+        return toLtMillis(next);
+    }
+
+    // number of 8 hour weather windows since the ET epoch
+    public int getTimeSlot() {
+        return ETime.getTimeSlot(this.year, this.month, this.day, this.hour);
+    }
+
+    public static final int getTimeSlot(int year, int month, int day, int hour) {
+        return (int) (((year * YEAR_IN_MONTH + month) * MONTH_IN_DAY + day)
+                * (DAY_IN_HOUR / WINDOW_IN_HOUR) + hour / WINDOW_IN_HOUR);
+    }
+
+    // year-month-day-hour, for debugging only. Use getTimeSlot() as a key.
     public String getTimeId() {
         return ETime.getTimeId(this.year, this.month, this.day, this.hour);
     }
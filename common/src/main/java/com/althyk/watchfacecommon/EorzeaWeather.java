@@ -0,0 +1,128 @@
+package com.althyk.watchfacecommon;
+
+/**
+ * Deterministic Eorzea weather forecast. The weather of an area only depends on the ET weather
+ * window ({@link ETime#getTimeSlot()}): a hash of the window gives a chance in [0, 100), and the
+ * weather rate table of the area maps the chance to a weather id.
+ * The calculation is pure integer arithmetic and doesn't allocate.
+ */
+public final class EorzeaWeather {
+    // weather ids, which are also the numbers of the weather_icon_XX drawables
+    public static final int NO_WEATHER    = 0;
+    public static final int CLEAR_SKIES   = 1;
+    public static final int FAIR_SKIES    = 2;
+    public static final int CLOUDS        = 3;
+    public static final int FOG           = 4;
+    public static final int WIND          = 5;
+    public static final int GALES         = 6;
+    public static final int RAIN          = 7;
+    public static final int SHOWERS       = 8;
+    public static final int THUNDER       = 9;
+    public static final int THUNDERSTORMS = 10;
+    public static final int DUST_STORMS   = 11;
+    public static final int SANDSTORMS    = 12;
+    public static final int HOT_SPELLS    = 13;
+    public static final int HEAT_WAVES    = 14;
+    public static final int SNOW          = 15;
+    public static final int BLIZZARDS     = 16;
+    public static final int GLOOM         = 17;
+    public static final int AURORAS       = 18;
+
+    /**
+     * Weather rates, indexed by area id (R.array.area_array).
+     * Each row is pairs of (cumulative chance upper bound, weather id).
+     */
+    private static final int[][] RATES = {
+            // no area
+            {},
+            // Limsa Lominsa
+            {20, CLOUDS, 50, CLEAR_SKIES, 80, FAIR_SKIES, 90, FOG, 100, RAIN},
+            // Middle La Noscea
+            {20, CLOUDS, 50, CLEAR_SKIES, 70, FAIR_SKIES, 80, WIND, 90, FOG, 100, RAIN},
+            // Lower La Noscea
+            {20, CLOUDS, 50, CLEAR_SKIES, 70, FAIR_SKIES, 80, WIND, 90, FOG, 100, RAIN},
+            // Eastern La Noscea
+            {5, FOG, 50, CLEAR_SKIES, 80, FAIR_SKIES, 90, CLOUDS, 95, RAIN, 100, SHOWERS},
+            // Western La Noscea
+            {10, FOG, 40, CLEAR_SKIES, 60, FAIR_SKIES, 80, CLOUDS, 90, WIND, 100, GALES},
+            // Upper La Noscea
+            {30, CLEAR_SKIES, 50, FAIR_SKIES, 70, CLOUDS, 80, FOG, 90, THUNDER,
+                    100, THUNDERSTORMS},
+            // Outer La Noscea
+            {30, CLEAR_SKIES, 50, FAIR_SKIES, 70, CLOUDS, 85, FOG, 100, RAIN},
+            // Wolves' Den Pier
+            {20, CLOUDS, 50, CLEAR_SKIES, 80, FAIR_SKIES, 90, FOG, 100, THUNDERSTORMS},
+            // Mist
+            {20, CLOUDS, 50, CLEAR_SKIES, 70, FAIR_SKIES, 80, FAIR_SKIES, 90, FOG, 100, RAIN},
+            // Gridania
+            {5, RAIN, 20, RAIN, 30, FOG, 40, CLOUDS, 55, FAIR_SKIES, 85, CLEAR_SKIES,
+                    100, FAIR_SKIES},
+            // Central Shroud
+            {5, THUNDER, 20, RAIN, 30, FOG, 40, CLOUDS, 55, FAIR_SKIES, 85, CLEAR_SKIES,
+                    100, FAIR_SKIES},
+            // East Shroud
+            {5, THUNDER, 20, RAIN, 30, FOG, 40, CLOUDS, 55, FAIR_SKIES, 85, CLEAR_SKIES,
+                    100, FAIR_SKIES},
+            // South Shroud
+            {5, FOG, 10, THUNDERSTORMS, 25, THUNDER, 30, FOG, 40, CLOUDS, 70, FAIR_SKIES,
+                    100, CLEAR_SKIES},
+            // North Shroud
+            {5, FOG, 10, SHOWERS, 25, RAIN, 30, FOG, 40, CLOUDS, 70, FAIR_SKIES,
+                    100, CLEAR_SKIES},
+            // Lavender Beds
+            {5, CLOUDS, 20, RAIN, 30, FOG, 40, CLOUDS, 55, FAIR_SKIES, 85, CLEAR_SKIES,
+                    100, FAIR_SKIES},
+            // Ul'dah
+            {40, CLEAR_SKIES, 60, FAIR_SKIES, 85, CLOUDS, 95, FOG, 100, RAIN},
+            // Western Thanalan
+            {40, CLEAR_SKIES, 60, FAIR_SKIES, 85, CLOUDS, 95, FOG, 100, RAIN},
+            // Central Thanalan
+            {15, DUST_STORMS, 55, CLEAR_SKIES, 75, FAIR_SKIES, 85, CLOUDS, 95, FOG, 100, RAIN},
+            // Eastern Thanalan
+            {40, CLEAR_SKIES, 60, FAIR_SKIES, 70, CLOUDS, 80, FOG, 85, RAIN, 100, SHOWERS},
+            // Southern Thanalan
+            {20, HEAT_WAVES, 60, CLEAR_SKIES, 80, FAIR_SKIES, 90, CLOUDS, 100, FOG},
+            // Northern Thanalan
+            {5, CLEAR_SKIES, 20, FAIR_SKIES, 50, CLOUDS, 100, FOG},
+            // The Goblet
+            {40, CLEAR_SKIES, 60, FAIR_SKIES, 85, CLOUDS, 95, FOG, 100, RAIN},
+            // Coerthas Central Highlands
+            {20, BLIZZARDS, 60, SNOW, 70, FAIR_SKIES, 75, CLEAR_SKIES, 90, CLOUDS, 100, FOG},
+            // Mor Dhona
+            {15, CLOUDS, 30, FOG, 60, GLOOM, 75, CLEAR_SKIES, 100, FAIR_SKIES},
+    };
+
+    public static final int AREA_COUNT = RATES.length;
+
+    private static final int WINDOWS_IN_DAY = (int) (ETime.DAY_IN_HOUR / ETime.WINDOW_IN_HOUR);
+
+    /** Returns the weather chance [0, 100) of an ET weather window. */
+    public static int getChance(int slot) {
+        int day = slot / WINDOWS_IN_DAY;
+        int window = slot % WINDOWS_IN_DAY;
+        // the hash is keyed by the hour the window ends: 8, 16 or 0
+        int increment = (int) ((window + 1) * ETime.WINDOW_IN_HOUR % ETime.DAY_IN_HOUR);
+        int base = day * 100 + increment;
+        // unsigned 32 bit arithmetic
+        int step1 = (base << 11) ^ base;
+        int step2 = (step1 >>> 8) ^ step1;
+        return (int) ((step2 & 0xffffffffL) % 100);
+    }
+
+    /** Returns the weather id of the area in the ET weather window, or NO_WEATHER. */
+    public static int getWeatherId(int area, int slot) {
+        if (area <= 0 || area >= RATES.length) {
+            return NO_WEATHER;
+        }
+        int chance = getChance(slot);
+        int[] rates = RATES[area];
+        for (int i = 0; i < rates.length; i += 2) {
+            if (chance < rates[i]) {
+                return rates[i + 1];
+            }
+        }
+        return NO_WEATHER;
+    }
+
+    private EorzeaWeather() { }
+}
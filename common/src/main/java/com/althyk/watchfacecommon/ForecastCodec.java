@@ -0,0 +1,95 @@
+package com.althyk.watchfacecommon;
+
+/**
+ * Packed binary format of a forecast, shared by the phone (encoder) and the watch (decoder).
+ *
+ * | version (1) | base slot (4, big endian) | count (2) | count * entry (3) |
+ * entry: | slot delta from base (signed 1) | area (1) | weather id (1) |
+ *
+ * Slots are ET weather windows ({@link ETime#getTimeSlot()}). The accessors read straight from
+ * the byte array, so the watch never materializes the entries.
+ */
+public final class ForecastCodec {
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 7;
+    private static final int ENTRY_SIZE = 3;
+    private static final int MAX_ENTRIES = 0xffff;
+
+    /** Encoder. Entries must be within [-128, 127] windows of the base slot. */
+    public static final class Writer {
+        private final int mBaseSlot;
+        private byte[] mBuffer;
+        private int mCount = 0;
+
+        public Writer(int baseSlot, int expectedCount) {
+            mBaseSlot = baseSlot;
+            mBuffer = new byte[HEADER_SIZE + ENTRY_SIZE * Math.max(expectedCount, 1)];
+        }
+
+        public Writer add(int slot, int area, int weatherId) {
+            int delta = slot - mBaseSlot;
+            if (delta < Byte.MIN_VALUE || delta > Byte.MAX_VALUE) {
+                throw new IllegalArgumentException("slot out of range: " + slot);
+            }
+            if (mCount == MAX_ENTRIES) {
+                throw new IllegalStateException("too many entries");
+            }
+            int offset = HEADER_SIZE + ENTRY_SIZE * mCount;
+            if (offset + ENTRY_SIZE > mBuffer.length) {
+                byte[] buffer = new byte[HEADER_SIZE + ENTRY_SIZE * mCount * 2];
+                System.arraycopy(mBuffer, 0, buffer, 0, offset);
+                mBuffer = buffer;
+            }
+            mBuffer[offset]     = (byte) delta;
+            mBuffer[offset + 1] = (byte) area;
+            mBuffer[offset + 2] = (byte) weatherId;
+            mCount++;
+            return this;
+        }
+
+        public byte[] toByteArray() {
+            byte[] data = new byte[HEADER_SIZE + ENTRY_SIZE * mCount];
+            System.arraycopy(mBuffer, HEADER_SIZE, data, HEADER_SIZE, ENTRY_SIZE * mCount);
+            data[0] = (byte) VERSION;
+            data[1] = (byte) (mBaseSlot >>> 24);
+            data[2] = (byte) (mBaseSlot >>> 16);
+            data[3] = (byte) (mBaseSlot >>> 8);
+            data[4] = (byte) mBaseSlot;
+            data[5] = (byte) (mCount >>> 8);
+            data[6] = (byte) mCount;
+            return data;
+        }
+    }
+
+    /** Returns whether data is a well-formed forecast of this version. */
+    public static boolean isValid(byte[] data) {
+        return data != null
+                && data.length >= HEADER_SIZE
+                && data[0] == VERSION
+                && data.length == HEADER_SIZE + ENTRY_SIZE * getCount(data);
+    }
+
+    public static int getBaseSlot(byte[] data) {
+        return (data[1] & 0xff) << 24 | (data[2] & 0xff) << 16 | (data[3] & 0xff) << 8
+                | (data[4] & 0xff);
+    }
+
+    public static int getCount(byte[] data) {
+        return (data[5] & 0xff) << 8 | (data[6] & 0xff);
+    }
+
+    public static int getSlot(byte[] data, int index) {
+        return getBaseSlot(data) + data[HEADER_SIZE + ENTRY_SIZE * index];
+    }
+
+    public static int getArea(byte[] data, int index) {
+        return data[HEADER_SIZE + ENTRY_SIZE * index + 1] & 0xff;
+    }
+
+    public static int getWeatherId(byte[] data, int index) {
+        return data[HEADER_SIZE + ENTRY_SIZE * index + 2] & 0xff;
+    }
+
+    private ForecastCodec() { }
+}
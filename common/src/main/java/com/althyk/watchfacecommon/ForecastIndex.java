@@ -0,0 +1,59 @@
+package com.althyk.watchfacecommon;
+
+/**
+ * Forecast of one area, keyed by the ET weather window ({@link ETime#getTimeSlot()}).
+ * The windows of a forecast are consecutive, so a ring buffer indexed by slot modulo capacity
+ * gives O(1) lookups without boxing or allocation.
+ */
+public final class ForecastIndex<T> {
+    public static final int DEFAULT_CAPACITY = 5; // [-1, 3] windows from now
+    public static final int NO_WEATHER = 0;
+
+    private static final int NO_SLOT = -1;
+
+    private final int[] mSlots;
+    private final int[] mWeatherIds;
+    private final Object[] mValues;
+
+    public ForecastIndex(int capacity) {
+        mSlots = new int[capacity];
+        mWeatherIds = new int[capacity];
+        mValues = new Object[capacity];
+        clear();
+    }
+
+    public void put(int slot, int weatherId, T value) {
+        int index = indexOf(slot);
+        mSlots[index] = slot;
+        mWeatherIds[index] = weatherId;
+        mValues[index] = value;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int slot) {
+        int index = indexOf(slot);
+        return mSlots[index] == slot ? (T) mValues[index] : null;
+    }
+
+    public int getWeatherId(int slot) {
+        int index = indexOf(slot);
+        return mSlots[index] == slot ? mWeatherIds[index] : NO_WEATHER;
+    }
+
+    public boolean contains(int slot) {
+        return mSlots[indexOf(slot)] == slot;
+    }
+
+    public void clear() {
+        for (int i = 0; i < mSlots.length; i++) {
+            mSlots[i] = NO_SLOT;
+            mWeatherIds[i] = NO_WEATHER;
+            mValues[i] = null;
+        }
+    }
+
+    private int indexOf(int slot) {
+        int index = slot % mSlots.length;
+        return index < 0 ? index + mSlots.length : index;
+    }
+}
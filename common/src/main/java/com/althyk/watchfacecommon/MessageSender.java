@@ -5,13 +5,27 @@ import android.util.Log;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.wearable.DataMap;
-import com.google.android.gms.wearable.Node;
-import com.google.android.gms.wearable.NodeApi;
+import com.google.android.gms.wearable.MessageApi;
 import com.google.android.gms.wearable.Wearable;
 
+import java.util.List;
+
 public class MessageSender {
     private static final String TAG = "MessageSender";
 
+    private static final ResultCallback<MessageApi.SendMessageResult> sResultCallback =
+            new ResultCallback<MessageApi.SendMessageResult>() {
+                @Override
+                public void onResult(MessageApi.SendMessageResult result) {
+                    if (!result.getStatus().isSuccess()) {
+                        Log.e(TAG, "Failed to send message: " + result.getStatus());
+                        // the node may be gone, look the nodes up again next time
+                        NodeDirectory.getInstance().invalidate();
+                    }
+                }
+            };
+
+    /** Sends the same message to every connected node (from NodeDirectory). */
     public static final void sendMessage (final GoogleApiClient client,
                                           final String path,
                                           final DataMap dataMap) {
@@ -20,23 +34,28 @@ public class MessageSender {
             return;
         }
 
-        Wearable.NodeApi.getConnectedNodes(client).setResultCallback(
-                new ResultCallback<NodeApi.GetConnectedNodesResult>() {
-                    @Override
-                    public void onResult(final NodeApi.GetConnectedNodesResult result) {
-                        if (!result.getStatus().isSuccess()) {
-                            Log.e(TAG, "Failed to get connected nodes");
-                            return;
-                        }
-
-                        byte[] rawData = dataMap == null ? null : dataMap.toByteArray();
-                        for (Node node : result.getNodes()) {
-                            Wearable.MessageApi.sendMessage(client, node.getId(), path, rawData);
-                        }
-
-                    }
-                });
+        NodeDirectory.getInstance().getConnectedNodes(client, new NodeDirectory.Callback() {
+            @Override
+            public void onNodes(List<String> nodeIds) {
+                // serialized once for every node
+                byte[] rawData = dataMap == null ? null : dataMap.toByteArray();
+                for (String nodeId : nodeIds) {
+                    sendMessage(client, nodeId, path, rawData);
+                }
+            }
+        });
+    }
 
-        return;
+    /** Sends a serialized message to one node. */
+    public static void sendMessage(GoogleApiClient client, String nodeId, String path,
+                                   byte[] rawData) {
+        if (client == null || nodeId == null || path == null) {
+            return;
+        }
+        MetricsRecorder.increment(MetricsRecorder.COUNTER_MESSAGES_SENT);
+        MetricsRecorder.add(MetricsRecorder.COUNTER_MESSAGE_BYTES,
+                rawData == null ? 0 : rawData.length);
+        Wearable.MessageApi.sendMessage(client, nodeId, path, rawData)
+                .setResultCallback(sResultCallback);
     }
 }
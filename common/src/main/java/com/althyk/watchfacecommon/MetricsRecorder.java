@@ -0,0 +1,191 @@
+package com.althyk.watchfacecommon;
+
+import android.os.Debug;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide, lock-free performance counters. Recording is a no-op until enabled at runtime,
+ * and every record call only touches preallocated atomic arrays, so it is safe on the draw path.
+ *
+ * Frame times go into a log-linear (HDR style) histogram: each power of two of nanoseconds is
+ * split into SUB_BUCKETS linear buckets, which keeps the relative error under 1 / SUB_BUCKETS.
+ */
+public final class MetricsRecorder {
+    // counters
+    public static final int COUNTER_FRAMES            = 0;
+    public static final int COUNTER_INVALIDATES       = 1;
+    public static final int COUNTER_DROPPED_FRAMES    = 2;
+    public static final int COUNTER_ALLOCATIONS       = 3;
+    public static final int COUNTER_MSG_UPDATE_TIME   = 4;
+    public static final int COUNTER_ANIMATION_FRAMES  = 5;
+    public static final int COUNTER_ANIMATION_TWEEN_STEPS = 6;
+    public static final int COUNTER_MSG_REQUEST_FETCH = 7;
+    public static final int COUNTER_WEATHER_BYTES     = 8;
+    public static final int COUNTER_WEATHER_INGEST_NANOS = 9;
+    public static final int COUNTER_DATA_ROUND_TRIPS  = 10;
+    public static final int COUNTER_DATA_COALESCED    = 11;
+    public static final int COUNTER_CONNECTS          = 12;
+    public static final int COUNTER_CONNECT_NANOS     = 13;
+    public static final int COUNTER_CONNECT_QUEUED    = 14;
+    public static final int COUNTER_MESSAGES_SENT     = 15;
+    public static final int COUNTER_MESSAGE_BYTES     = 16;
+    public static final int COUNTER_NODE_LOOKUPS_AVOIDED = 17;
+    public static final int COUNTER_AMBIENT_FRAMES    = 18;
+    public static final int COUNTER_AMBIENT_DRAW_NANOS = 19;
+    public static final int COUNTER_AMBIENT_CACHE_MISSES = 20;
+    public static final int COUNTER_AREA_SELECTIONS   = 21;
+    public static final int COUNTER_DATA_WRITES_SKIPPED = 22;
+    public static final int COUNTER_FIRST_FRAMES      = 23;
+    public static final int COUNTER_FIRST_FRAME_NANOS = 24;
+    public static final int COUNTER_SNAPSHOT_LOADS    = 25;
+    private static final int COUNTER_SIZE = 26;
+
+    private static final String[] COUNTER_NAMES = {
+            "frames", "invalidates", "dropped", "allocs",
+            "msgTime", "animFrames", "animTweenSteps", "msgFetch",
+            "weatherBytes", "ingestNs", "dataIpc", "dataCoalesced",
+            "connects", "connectNs", "connectQueued",
+            "msgSent", "msgBytes", "nodeLookupsAvoided",
+            "ambientFrames", "ambientNs", "ambientMisses",
+            "areaSelections", "dataWritesSkipped",
+            "firstFrames", "firstFrameNs", "snapshotLoads",
+    };
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAGNITUDES = 40; // up to 2^40 [ns] ~ 18 minutes
+    private static final int BUCKET_SIZE = MAGNITUDES * SUB_BUCKETS;
+
+    private static volatile boolean sEnabled = false;
+    private static volatile boolean sAllocCounting = false;
+
+    private static final AtomicLongArray sCounters = new AtomicLongArray(COUNTER_SIZE);
+    private static final AtomicLongArray sFrameTimeBuckets = new AtomicLongArray(BUCKET_SIZE);
+
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    public static void increment(int counter) {
+        if (sEnabled) {
+            sCounters.incrementAndGet(counter);
+        }
+    }
+
+    public static void add(int counter, long delta) {
+        if (sEnabled) {
+            sCounters.addAndGet(counter, delta);
+        }
+    }
+
+    public static long get(int counter) {
+        return sCounters.get(counter);
+    }
+
+    /**
+     * Starts or stops counting allocations into COUNTER_ALLOCATIONS. This is separate from
+     * setEnabled(): Debug.startAllocCounting() is process wide and slows down every allocation,
+     * so it is only meant for the allocation tests, not for measuring frame times.
+     */
+    public static void setAllocCountingEnabled(boolean enabled) {
+        if (sAllocCounting == enabled) {
+            return;
+        }
+        sAllocCounting = enabled;
+        // needed for Debug.getThreadAllocCount() in beginAllocCount()/endAllocCount()
+        if (enabled) {
+            Debug.startAllocCounting();
+        } else {
+            Debug.stopAllocCounting();
+        }
+    }
+
+    /** Returns a token for endAllocCount(), or 0 when allocation counting is off. */
+    public static int beginAllocCount() {
+        return sAllocCounting ? Debug.getThreadAllocCount() : 0;
+    }
+
+    /** Adds the allocations made on this thread since beginAllocCount() to COUNTER_ALLOCATIONS. */
+    public static void endAllocCount(int token) {
+        if (sAllocCounting) {
+            sCounters.addAndGet(COUNTER_ALLOCATIONS, Debug.getThreadAllocCount() - token);
+        }
+    }
+
+    /** Records the duration of one frame. Returns immediately when disabled. */
+    public static void recordFrame(long durationNanos) {
+        if (!sEnabled) {
+            return;
+        }
+        sCounters.incrementAndGet(COUNTER_FRAMES);
+        sFrameTimeBuckets.incrementAndGet(bucketOf(durationNanos));
+    }
+
+    /** Returns the upper bound [ns] of the frame time at the given percentile (0-100). */
+    public static long getFrameTimePercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            total += sFrameTimeBuckets.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long threshold = (long) Math.ceil(total * percentile / 100.0);
+        long count = 0;
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            count += sFrameTimeBuckets.get(i);
+            if (count >= threshold) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(BUCKET_SIZE - 1);
+    }
+
+    public static void reset() {
+        for (int i = 0; i < COUNTER_SIZE; i++) {
+            sCounters.set(i, 0);
+        }
+        for (int i = 0; i < BUCKET_SIZE; i++) {
+            sFrameTimeBuckets.set(i, 0);
+        }
+    }
+
+    /** Returns a compact one-line dump, e.g. "frames=120 ... p50=1200us p90=... p99=...". */
+    public static String dump() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < COUNTER_SIZE; i++) {
+            builder.append(COUNTER_NAMES[i]).append('=').append(sCounters.get(i)).append(' ');
+        }
+        builder.append("p50=").append(getFrameTimePercentile(50) / 1000).append("us ");
+        builder.append("p90=").append(getFrameTimePercentile(90) / 1000).append("us ");
+        builder.append("p99=").append(getFrameTimePercentile(99) / 1000).append("us");
+        return builder.toString();
+    }
+
+    private static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) Math.max(nanos, 0);
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(nanos); // floor(log2(nanos))
+        int subBucket = (int) (nanos >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        int bucket = (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        return Math.min(bucket, BUCKET_SIZE - 1);
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int magnitude = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1)) << (magnitude - SUB_BUCKET_BITS);
+    }
+
+    private MetricsRecorder() { }
+}
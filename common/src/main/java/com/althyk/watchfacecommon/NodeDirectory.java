@@ -0,0 +1,111 @@
+package com.althyk.watchfacecommon;
+
+import android.util.Log;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.wearable.Node;
+import com.google.android.gms.wearable.NodeApi;
+import com.google.android.gms.wearable.Wearable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Process-wide cache of the connected nodes, and of what each node subscribed to.
+ *
+ * The node list is looked up once and then kept current by onPeerConnected() and
+ * onPeerDisconnected(), which the listener services forward from the Wearable API. A failed send
+ * invalidates the cache, so the next send looks the nodes up again.
+ */
+public final class NodeDirectory {
+    private static final String TAG = "NodeDirectory";
+
+    public interface Callback {
+        void onNodes(List<String> nodeIds);
+    }
+
+    /** The forecast a watch asked for with its last fetch request. */
+    public static final class Subscription {
+        public final int area;
+        public final int wireFormat;
+
+        public Subscription(int area, int wireFormat) {
+            this.area = area;
+            this.wireFormat = wireFormat;
+        }
+    }
+
+    private static final NodeDirectory sInstance = new NodeDirectory();
+
+    // guarded by this
+    private ArrayList<String> mNodeIds; // null until looked up
+    private final HashMap<String, Subscription> mSubscriptions = new HashMap<>();
+
+    public static NodeDirectory getInstance() {
+        return sInstance;
+    }
+
+    /** Passes the connected nodes to the callback, looking them up only if not cached. */
+    public void getConnectedNodes(GoogleApiClient client, final Callback callback) {
+        List<String> nodeIds;
+        synchronized (this) {
+            nodeIds = mNodeIds == null ? null : new ArrayList<>(mNodeIds);
+        }
+        if (nodeIds != null) {
+            MetricsRecorder.increment(MetricsRecorder.COUNTER_NODE_LOOKUPS_AVOIDED);
+            callback.onNodes(nodeIds);
+            return;
+        }
+
+        Wearable.NodeApi.getConnectedNodes(client).setResultCallback(
+                new ResultCallback<NodeApi.GetConnectedNodesResult>() {
+                    @Override
+                    public void onResult(NodeApi.GetConnectedNodesResult result) {
+                        if (!result.getStatus().isSuccess()) {
+                            Log.e(TAG, "Failed to get connected nodes");
+                            return;
+                        }
+
+                        ArrayList<String> nodeIds = new ArrayList<>();
+                        for (Node node : result.getNodes()) {
+                            nodeIds.add(node.getId());
+                        }
+                        synchronized (NodeDirectory.this) {
+                            mNodeIds = nodeIds;
+                        }
+                        callback.onNodes(new ArrayList<>(nodeIds));
+                    }
+                });
+    }
+
+    public synchronized void onPeerConnected(Node peer) {
+        if (mNodeIds != null && !mNodeIds.contains(peer.getId())) {
+            mNodeIds.add(peer.getId());
+        }
+    }
+
+    public synchronized void onPeerDisconnected(Node peer) {
+        if (mNodeIds != null) {
+            mNodeIds.remove(peer.getId());
+        }
+        mSubscriptions.remove(peer.getId());
+    }
+
+    /** Forgets the cached nodes, e.g. after a send failed. */
+    public synchronized void invalidate() {
+        mNodeIds = null;
+    }
+
+    public synchronized void setSubscription(String nodeId, Subscription subscription) {
+        mSubscriptions.put(nodeId, subscription);
+    }
+
+    /** Returns the subscription of the node, or null if it never sent one. */
+    public synchronized Subscription getSubscription(String nodeId) {
+        return mSubscriptions.get(nodeId);
+    }
+
+    private NodeDirectory() { }
+}
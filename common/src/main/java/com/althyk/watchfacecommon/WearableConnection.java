@@ -0,0 +1,257 @@
+package com.althyk.watchfacecommon;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.Wearable;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide connection to the Wearable API, shared by the watch faces, the config activity and
+ * the listener services.
+ *
+ * Users hold the connection with acquire() / release(). Operations passed to whenConnected() run
+ * right away when connected, otherwise they are queued and run on the main thread once the
+ * connection is up, so no thread ever blocks on connect. A failed connection is retried with
+ * exponential backoff while anyone holds or waits for it; neither acquire() nor whenConnected()
+ * cuts the backoff short. The last release disconnects only after IDLE_DISCONNECT_MS, so results
+ * of in-flight calls still arrive.
+ */
+public final class WearableConnection
+        implements GoogleApiClient.ConnectionCallbacks, GoogleApiClient.OnConnectionFailedListener {
+    private static final String TAG = "WearableConnection";
+
+    private static final long IDLE_DISCONNECT_MS = TimeUnit.SECONDS.toMillis(30);
+    private static final long MIN_RECONNECT_BACKOFF_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final long MAX_RECONNECT_BACKOFF_MS = TimeUnit.MINUTES.toMillis(1);
+
+    public interface Callback {
+        void onConnected(GoogleApiClient client);
+    }
+
+    /** The connection being driven: the GoogleApiClient, or a fake in tests. */
+    interface Backend {
+        void connect();
+        void disconnect();
+        boolean isConnected();
+        boolean isConnecting();
+    }
+
+    private static WearableConnection sInstance;
+
+    private final GoogleApiClient mClient;
+    private final Backend mBackend;
+    private final Handler mHandler;
+    private final long mIdleDisconnectMs;
+    private final long mMinReconnectBackoffMs;
+    private final long mMaxReconnectBackoffMs;
+
+    // guarded by this
+    private final ArrayList<Callback> mPendingCallbacks = new ArrayList<>();
+    private int mRefCount = 0;
+    private long mConnectStartNanos = 0;
+    private long mReconnectBackoffMs = 0;
+    private boolean mReconnectScheduled = false;
+
+    private final Runnable mReconnectRunnable = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (WearableConnection.this) {
+                mReconnectScheduled = false;
+                connectIfNeeded();
+            }
+        }
+    };
+
+    private final Runnable mDisconnectRunnable = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (WearableConnection.this) {
+                if (isIdle()) {
+                    mHandler.removeCallbacks(mReconnectRunnable);
+                    mReconnectScheduled = false;
+                    mBackend.disconnect();
+                }
+            }
+        }
+    };
+
+    public static synchronized WearableConnection getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new WearableConnection(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private WearableConnection(Context context) {
+        mClient = new GoogleApiClient.Builder(context)
+                .addConnectionCallbacks(this)
+                .addOnConnectionFailedListener(this)
+                .addApi(Wearable.API)
+                .build();
+        mBackend = new Backend() {
+            @Override
+            public void connect() {
+                mClient.connect();
+            }
+
+            @Override
+            public void disconnect() {
+                mClient.disconnect();
+            }
+
+            @Override
+            public boolean isConnected() {
+                return mClient.isConnected();
+            }
+
+            @Override
+            public boolean isConnecting() {
+                return mClient.isConnecting();
+            }
+        };
+        mHandler = new Handler(Looper.getMainLooper());
+        mIdleDisconnectMs = IDLE_DISCONNECT_MS;
+        mMinReconnectBackoffMs = MIN_RECONNECT_BACKOFF_MS;
+        mMaxReconnectBackoffMs = MAX_RECONNECT_BACKOFF_MS;
+    }
+
+    /**
+     * For tests: drives the backend, which reports back through onConnected() and
+     * onConnectionFailed(), and passes the client to the callbacks as is.
+     */
+    WearableConnection(GoogleApiClient client, Backend backend, Handler handler,
+            long idleDisconnectMs, long minReconnectBackoffMs, long maxReconnectBackoffMs) {
+        mClient = client;
+        mBackend = backend;
+        mHandler = handler;
+        mIdleDisconnectMs = idleDisconnectMs;
+        mMinReconnectBackoffMs = minReconnectBackoffMs;
+        mMaxReconnectBackoffMs = maxReconnectBackoffMs;
+    }
+
+    /** Returns the shared client. Prefer whenConnected(), which waits for the connection. */
+    public GoogleApiClient getClient() {
+        return mClient;
+    }
+
+    public boolean isConnected() {
+        return mBackend.isConnected();
+    }
+
+    public synchronized void acquire() {
+        mRefCount++;
+        mHandler.removeCallbacks(mDisconnectRunnable);
+        connectIfNeeded();
+    }
+
+    public synchronized void release() {
+        if (mRefCount == 0) {
+            throw new IllegalStateException("release() without acquire()");
+        }
+        mRefCount--;
+        if (isIdle()) {
+            mHandler.postDelayed(mDisconnectRunnable, mIdleDisconnectMs);
+        }
+    }
+
+    /**
+     * Runs the callback with the connected client: on this thread if already connected,
+     * otherwise on the main thread once connected.
+     */
+    public void whenConnected(Callback callback) {
+        synchronized (this) {
+            if (!mBackend.isConnected()) {
+                mPendingCallbacks.add(callback);
+                MetricsRecorder.increment(MetricsRecorder.COUNTER_CONNECT_QUEUED);
+                mHandler.removeCallbacks(mDisconnectRunnable);
+                connectIfNeeded();
+                return;
+            }
+        }
+        callback.onConnected(mClient);
+    }
+
+    /** Drops a callback that is still waiting for the connection. */
+    public synchronized void cancel(Callback callback) {
+        while (mPendingCallbacks.remove(callback)) {
+            // remove every occurrence
+        }
+        if (isIdle()) {
+            mHandler.postDelayed(mDisconnectRunnable, mIdleDisconnectMs);
+        }
+    }
+
+    /** Returns the number of operations waiting for the connection. */
+    public synchronized int getQueueDepth() {
+        return mPendingCallbacks.size();
+    }
+
+    @Override // GoogleApiClient.ConnectionCallbacks
+    public void onConnected(Bundle connectionHint) {
+        ArrayList<Callback> callbacks;
+        synchronized (this) {
+            MetricsRecorder.increment(MetricsRecorder.COUNTER_CONNECTS);
+            MetricsRecorder.add(MetricsRecorder.COUNTER_CONNECT_NANOS,
+                    System.nanoTime() - mConnectStartNanos);
+            mReconnectBackoffMs = 0;
+            callbacks = new ArrayList<>(mPendingCallbacks);
+            mPendingCallbacks.clear();
+            if (isIdle()) {
+                mHandler.postDelayed(mDisconnectRunnable, mIdleDisconnectMs);
+            }
+        }
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "onConnected: " + connectionHint + ", queued " + callbacks.size());
+        }
+
+        for (Callback callback : callbacks) {
+            callback.onConnected(mClient);
+        }
+    }
+
+    @Override  // GoogleApiClient.ConnectionCallbacks
+    public void onConnectionSuspended(int cause) {
+        // the client reconnects by itself, and whenConnected() queues in the meantime
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "onConnectionSuspended: " + cause);
+        }
+    }
+
+    @Override  // GoogleApiClient.OnConnectionFailedListener
+    public synchronized void onConnectionFailed(ConnectionResult result) {
+        if (isIdle()) {
+            return;
+        }
+        mReconnectBackoffMs = mReconnectBackoffMs == 0
+                ? mMinReconnectBackoffMs
+                : Math.min(mReconnectBackoffMs * 2, mMaxReconnectBackoffMs);
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "onConnectionFailed: " + result + ", retry in " + mReconnectBackoffMs);
+        }
+        mHandler.removeCallbacks(mReconnectRunnable);
+        mHandler.postDelayed(mReconnectRunnable, mReconnectBackoffMs);
+        mReconnectScheduled = true;
+    }
+
+    // holding the lock; while a reconnect is scheduled, it is left to connect after the backoff
+    private void connectIfNeeded() {
+        if (mReconnectScheduled || mBackend.isConnected() || mBackend.isConnecting()) {
+            return;
+        }
+        mConnectStartNanos = System.nanoTime();
+        mBackend.connect();
+    }
+
+    // holding the lock
+    private boolean isIdle() {
+        return mRefCount == 0 && mPendingCallbacks.isEmpty();
+    }
+}
@@ -0,0 +1,103 @@
+package com.althyk.watchface;
+
+import android.test.AndroidTestCase;
+
+import com.althyk.watchfacecommon.ETime;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Revalidation of the ForecastCache through WeatherApi against a StubHttpServer, and its
+ * download counter.
+ */
+public class ForecastCacheTest extends AndroidTestCase {
+    private static final String BODY = "{\"data\":[{\"time\":0,\"area\":1,\"weather\":2},"
+            + "{\"time\":1,\"area\":1,\"weather\":3}]}";
+    private static final String ETAG = "\"v1\"";
+    private static final String LAST_MODIFIED = "Thu, 01 Jan 2015 00:00:00 GMT";
+    private static final long TIMEOUT_MS = 10000;
+
+    private StubHttpServer mServer;
+    private ForecastCache mCache;
+    private int mSlot;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mServer = new StubHttpServer();
+        WeatherApi.setEndpointForTesting(mServer.getUrl());
+        mCache = ForecastCache.getInstance(getContext());
+        mSlot = ETime.getTimeSlot(System.currentTimeMillis());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        WeatherApi.setEndpointForTesting(null);
+        mServer.shutdown();
+        super.tearDown();
+    }
+
+    public void testNotModifiedRevalidatesTheStaleBody() throws Exception {
+        mCache.put(mSlot - 1, BODY, ETAG, LAST_MODIFIED);
+        assertNull(mCache.getValidBody(mSlot));
+        mServer.setResponse(304, StubHttpServer.headers("ETag", ETAG), null);
+        long notModified = mCache.getNotModifiedCount();
+        long downloaded = mCache.getDownloadedBytes();
+
+        WeatherTable table = getWeatherList();
+
+        assertEquals(1, mServer.getRequestCount());
+        Map<String, String> request = mServer.getRequest(0);
+        assertEquals(ETAG, request.get("if-none-match"));
+        assertEquals(LAST_MODIFIED, request.get("if-modified-since"));
+        assertNotNull(table);
+        assertEquals(2, table.size);
+        assertEquals(mSlot, table.slot);
+        assertEquals(notModified + 1, mCache.getNotModifiedCount());
+        assertEquals(downloaded, mCache.getDownloadedBytes());
+        assertEquals(BODY, mCache.getValidBody(mSlot));
+
+        // valid for the rest of the window without a request
+        assertNotNull(getWeatherList());
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    public void testFullResponseReplacesTheBody() throws Exception {
+        mCache.put(mSlot - 1, "{\"data\":[]}", ETAG, null);
+        mServer.setResponse(200, StubHttpServer.headers("ETag", "\"v2\""), BODY);
+
+        WeatherTable table = getWeatherList();
+
+        assertEquals(ETAG, mServer.getRequest(0).get("if-none-match"));
+        assertNull(mServer.getRequest(0).get("if-modified-since"));
+        assertEquals(2, table.size);
+        assertEquals(mSlot, table.slot);
+        assertEquals("\"v2\"", mCache.getETag());
+        assertEquals(BODY, mCache.getValidBody(mSlot));
+    }
+
+    public void testDownloadedBytesAreUtf8() throws Exception {
+        // 1 + 2 + 3 + 4 bytes
+        String body = "{\"data\":[],\"note\":\"a\u00e9\u2603\ud83c\udf19\"}";
+        long downloaded = mCache.getDownloadedBytes();
+        mCache.put(mSlot - 1, body, null, null);
+        assertEquals(body.getBytes("UTF-8").length, mCache.getDownloadedBytes() - downloaded);
+    }
+
+    private WeatherTable getWeatherList() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<WeatherTable> result = new AtomicReference<>();
+        WeatherApi.getWeatherList(getContext(), new WeatherApi.WeatherCallback() {
+            @Override
+            public void onResult(WeatherTable weatherTable) {
+                result.set(weatherTable);
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        return result.get();
+    }
+}
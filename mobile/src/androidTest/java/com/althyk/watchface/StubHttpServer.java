@@ -0,0 +1,183 @@
+package com.althyk.watchface;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A one-thread HTTP/1.1 server on localhost for the WeatherApi tests. It records the headers of
+ * every request and answers them all with the same canned response, optionally holding each
+ * answer until release() so that tests can pile requests up behind one in flight.
+ */
+final class StubHttpServer {
+    private final ServerSocket mServerSocket;
+    private final Thread mThread;
+
+    // guarded by this
+    private final ArrayList<Map<String, String>> mRequests = new ArrayList<>();
+    private int mStatus = 200;
+    private final HashMap<String, String> mHeaders = new HashMap<>();
+    private String mBody = "";
+    private CountDownLatch mHold;
+
+    StubHttpServer() throws IOException {
+        mServerSocket = new ServerSocket(0, 16, InetAddress.getByName("127.0.0.1"));
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                serve();
+            }
+        }, "StubHttpServer");
+        mThread.start();
+    }
+
+    String getUrl() {
+        return "http://127.0.0.1:" + mServerSocket.getLocalPort() + "/weather";
+    }
+
+    /** Sets the response. Header names are matched case-insensitively by clients. */
+    synchronized void setResponse(int status, Map<String, String> headers, String body) {
+        mStatus = status;
+        mHeaders.clear();
+        if (headers != null) {
+            mHeaders.putAll(headers);
+        }
+        mBody = body != null ? body : "";
+    }
+
+    /** Holds every answer until release(). */
+    synchronized void hold() {
+        mHold = new CountDownLatch(1);
+    }
+
+    synchronized void release() {
+        if (mHold != null) {
+            mHold.countDown();
+            mHold = null;
+        }
+    }
+
+    synchronized int getRequestCount() {
+        return mRequests.size();
+    }
+
+    /** Returns the headers of a request, with lower-case names. */
+    synchronized Map<String, String> getRequest(int index) {
+        return mRequests.get(index);
+    }
+
+    /** Waits until count requests have arrived. Returns false on timeout. */
+    synchronized boolean awaitRequests(int count, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (mRequests.size() < count) {
+            long waitMs = deadline - System.currentTimeMillis();
+            if (waitMs <= 0) {
+                return false;
+            }
+            wait(waitMs);
+        }
+        return true;
+    }
+
+    void shutdown() throws IOException {
+        release();
+        mServerSocket.close();
+        try {
+            mThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void serve() {
+        while (!mServerSocket.isClosed()) {
+            Socket socket = null;
+            try {
+                socket = mServerSocket.accept();
+                handle(socket);
+            } catch (IOException e) {
+                // closed, or the client went away
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                if (socket != null) {
+                    try {
+                        socket.close();
+                    } catch (IOException e) {
+                        // ignore
+                    }
+                }
+            }
+        }
+    }
+
+    private void handle(Socket socket) throws IOException, InterruptedException {
+        BufferedReader reader = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+        String requestLine = reader.readLine();
+        if (requestLine == null) {
+            return;
+        }
+        HashMap<String, String> request = new HashMap<>();
+        String line;
+        while ((line = reader.readLine()) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                request.put(line.substring(0, colon).trim().toLowerCase(Locale.US),
+                        line.substring(colon + 1).trim());
+            }
+        }
+
+        CountDownLatch hold;
+        int status;
+        HashMap<String, String> headers;
+        String body;
+        synchronized (this) {
+            mRequests.add(request);
+            notifyAll();
+            hold = mHold;
+            status = mStatus;
+            headers = new HashMap<>(mHeaders);
+            body = mBody;
+        }
+        if (hold != null) {
+            hold.await(30, TimeUnit.SECONDS);
+        }
+
+        byte[] bodyBytes = status == 304 ? new byte[0] : body.getBytes("UTF-8");
+        StringBuilder response = new StringBuilder();
+        response.append("HTTP/1.1 ").append(status).append(status == 304 ? " Not Modified" : " OK")
+                .append("\r\n");
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            response.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        if (status != 304) {
+            response.append("Content-Type: application/json; charset=utf-8\r\n");
+            response.append("Content-Length: ").append(bodyBytes.length).append("\r\n");
+        }
+        response.append("Connection: close\r\n\r\n");
+        OutputStream out = socket.getOutputStream();
+        out.write(response.toString().getBytes("ISO-8859-1"));
+        out.write(bodyBytes);
+        out.flush();
+    }
+
+    /** Returns a map of the given name / value pairs. */
+    static Map<String, String> headers(String... namesAndValues) {
+        HashMap<String, String> headers = new HashMap<>();
+        for (int i = 0; i + 1 < namesAndValues.length; i += 2) {
+            headers.put(namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return headers;
+    }
+}
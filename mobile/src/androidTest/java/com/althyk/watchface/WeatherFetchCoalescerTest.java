@@ -0,0 +1,145 @@
+package com.althyk.watchface;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+
+import com.althyk.watchfacecommon.ETime;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Fetches through WeatherFetchCoalescer against a StubHttpServer: concurrent fetches share one
+ * request, a later fetch in the same ET window is answered by ForecastCache, and a fetch that
+ * fails before it is issued doesn't hold back the next one.
+ */
+public class WeatherFetchCoalescerTest extends AndroidTestCase {
+    private static final String BODY = "{\"data\":[{\"time\":0,\"area\":1,\"weather\":2},"
+            + "{\"time\":1,\"area\":1,\"weather\":3}]}";
+    private static final int THREADS = 8;
+    private static final long TIMEOUT_MS = 10000;
+
+    private StubHttpServer mServer;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mServer = new StubHttpServer();
+        mServer.setResponse(200, null, BODY);
+        WeatherApi.setEndpointForTesting(mServer.getUrl());
+        // a response of the previous window, without validators: the next fetch is a full request
+        int slot = ETime.getTimeSlot(System.currentTimeMillis());
+        ForecastCache.getInstance(getContext()).put(slot - 1, BODY, null, null);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        WeatherApi.setEndpointForTesting(null);
+        mServer.shutdown();
+        super.tearDown();
+    }
+
+    public void testConcurrentFetchesShareOneRequest() throws Exception {
+        final WeatherFetchCoalescer coalescer = WeatherFetchCoalescer.getInstance();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch result = new CountDownLatch(1);
+        final AtomicInteger issued = new AtomicInteger();
+        final AtomicInteger callbacks = new AtomicInteger();
+        final AtomicReference<WeatherTable> table = new AtomicReference<>();
+        final WeatherApi.WeatherCallback callback = new WeatherApi.WeatherCallback() {
+            @Override
+            public void onResult(WeatherTable weatherTable) {
+                table.set(weatherTable);
+                callbacks.incrementAndGet();
+                result.countDown();
+            }
+        };
+
+        mServer.hold();
+        long savedBefore = coalescer.getSavedCount();
+        Thread[] threads = new Thread[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (coalescer.fetch(getContext(), callback)) {
+                        issued.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(TIMEOUT_MS);
+        }
+
+        assertTrue(mServer.awaitRequests(1, TIMEOUT_MS));
+        assertEquals(1, issued.get());
+        assertEquals(THREADS - 1, coalescer.getSavedCount() - savedBefore);
+        SystemClock.sleep(200);
+        assertEquals(1, mServer.getRequestCount());
+
+        mServer.release();
+        assertTrue(result.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertNotNull(table.get());
+        assertEquals(2, table.get().size);
+        assertEquals(1, callbacks.get());
+
+        // the window's response is cached now, so the next fetch needs no request
+        final CountDownLatch cached = new CountDownLatch(1);
+        assertTrue(coalescer.fetch(getContext(), new WeatherApi.WeatherCallback() {
+            @Override
+            public void onResult(WeatherTable weatherTable) {
+                table.set(weatherTable);
+                cached.countDown();
+            }
+        }));
+        assertTrue(cached.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEquals(2, table.get().size);
+        assertEquals(1, mServer.getRequestCount());
+    }
+
+    public void testSynchronousFailureEndsTheFlight() throws Exception {
+        WeatherFetchCoalescer coalescer = WeatherFetchCoalescer.getInstance();
+        Context broken = new ContextWrapper(getContext()) {
+            @Override
+            public Context getApplicationContext() {
+                throw new IllegalStateException("no application");
+            }
+        };
+        final AtomicReference<WeatherTable> table = new AtomicReference<>();
+        final AtomicInteger callbacks = new AtomicInteger();
+        assertTrue(coalescer.fetch(broken, new WeatherApi.WeatherCallback() {
+            @Override
+            public void onResult(WeatherTable weatherTable) {
+                table.set(weatherTable);
+                callbacks.incrementAndGet();
+            }
+        }));
+        assertEquals(1, callbacks.get());
+        assertNull(table.get());
+
+        // not merged into the failed fetch
+        final CountDownLatch result = new CountDownLatch(1);
+        assertTrue(coalescer.fetch(getContext(), new WeatherApi.WeatherCallback() {
+            @Override
+            public void onResult(WeatherTable weatherTable) {
+                table.set(weatherTable);
+                result.countDown();
+            }
+        }));
+        assertTrue(result.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertNotNull(table.get());
+        assertEquals(2, table.get().size);
+    }
+}
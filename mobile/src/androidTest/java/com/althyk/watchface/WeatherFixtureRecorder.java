@@ -0,0 +1,79 @@
+package com.althyk.watchface;
+
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.althyk.watchfacecommon.ETime;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records a full response of the real weather API as a test fixture for EorzeaWeatherTest in
+ * common: {"recordedAt": <LT millis>, "response": <body>}. Does nothing unless enabled with
+ * "adb shell setprop log.tag.WeatherFixture VERBOSE", since it needs the network. The file goes
+ * to the app's external files directory under weather_fixtures, where adb can pull it (API 19 and
+ * up, as the app holds no storage permission).
+ */
+public class WeatherFixtureRecorder extends AndroidTestCase {
+    private static final String TAG = "WeatherFixture";
+
+    private static final String DIR_NAME = "weather_fixtures";
+    private static final long TIMEOUT_MS = 30000;
+
+    @Override
+    protected void tearDown() throws Exception {
+        WeatherApi.setResponseListenerForTesting(null);
+        super.tearDown();
+    }
+
+    public void testRecord() throws Exception {
+        if (!Log.isLoggable(TAG, Log.VERBOSE)) {
+            return;
+        }
+        File dir = getContext().getExternalFilesDir(DIR_NAME);
+        assertNotNull("No external files directory", dir);
+
+        final long[] requestedAt = new long[1];
+        final String[] body = new String[1];
+        WeatherApi.setResponseListenerForTesting(new WeatherApi.ResponseListener() {
+            @Override
+            public void onResponse(long requestTime, String response) {
+                requestedAt[0] = requestTime;
+                body[0] = response;
+            }
+        });
+        // a response of the previous window, without validators: the fetch is a full request
+        int slot = ETime.getTimeSlot(System.currentTimeMillis());
+        ForecastCache.getInstance(getContext()).put(slot - 1, "{\"data\":[]}", null, null);
+
+        final CountDownLatch result = new CountDownLatch(1);
+        WeatherApi.getWeatherList(getContext(), new WeatherApi.WeatherCallback() {
+            @Override
+            public void onResult(WeatherTable weatherTable) {
+                result.countDown();
+            }
+        });
+        assertTrue(result.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertNotNull("No full response", body[0]);
+
+        // the times in the body are relative to the window of the server, so a response that
+        // straddles a weather window can't be checked
+        long recordedAt = System.currentTimeMillis();
+        if (ETime.getTimeSlot(requestedAt[0]) != ETime.getTimeSlot(recordedAt)) {
+            Log.w(TAG, "Response straddles a weather window, not recorded");
+            return;
+        }
+        File file = new File(dir, recordedAt + ".json");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(("{\"recordedAt\":" + recordedAt + ",\"response\":" + body[0] + "}")
+                    .getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        Log.v(TAG, "Recorded " + file);
+    }
+}
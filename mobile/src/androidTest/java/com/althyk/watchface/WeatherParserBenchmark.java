@@ -0,0 +1,101 @@
+package com.althyk.watchface;
+
+import android.os.Debug;
+import android.util.Log;
+
+import com.google.gson.Gson;
+
+import junit.framework.TestCase;
+
+import java.io.StringReader;
+import java.util.List;
+
+/**
+ * Times WeatherParser against the Gson binding it replaced, on a response of 24 areas and 5
+ * windows. Gson is still on the classpath through Ion. Both are warmed up before either is timed.
+ * Results are logged as us and allocations per response under the tag "Benchmark".
+ */
+public class WeatherParserBenchmark extends TestCase {
+    private static final String TAG = "Benchmark";
+
+    private static final int WARMUP = 2000;
+    private static final int ITERATIONS = 10000;
+
+    public void testParse() {
+        String body = createBody();
+        Gson gson = new Gson();
+        parseStreaming(body, WARMUP);
+        parseGson(gson, body, WARMUP);
+
+        Debug.startAllocCounting();
+        try {
+            Debug.resetThreadAllocCount();
+            long start = System.nanoTime();
+            long streamingResult = parseStreaming(body, ITERATIONS);
+            long streamingNanos = System.nanoTime() - start;
+            int streamingAllocs = Debug.getThreadAllocCount();
+
+            Debug.resetThreadAllocCount();
+            start = System.nanoTime();
+            long gsonResult = parseGson(gson, body, ITERATIONS);
+            long gsonNanos = System.nanoTime() - start;
+            int gsonAllocs = Debug.getThreadAllocCount();
+
+            assertEquals(gsonResult, streamingResult);
+            Log.i(TAG, "Weather response (" + body.length() + " chars): WeatherParser "
+                    + streamingNanos / ITERATIONS / 1000 + " us/op, "
+                    + streamingAllocs / ITERATIONS + " allocs/op; Gson "
+                    + gsonNanos / ITERATIONS / 1000 + " us/op, "
+                    + gsonAllocs / ITERATIONS + " allocs/op");
+        } finally {
+            Debug.stopAllocCounting();
+        }
+    }
+
+    private static long parseStreaming(String body, int iterations) {
+        long sum = 0;
+        for (int i = 0; i < iterations; i++) {
+            WeatherTable table = WeatherParser.parse(new StringReader(body));
+            for (int j = 0; j < table.size; j++) {
+                sum += table.time[j] + table.area[j] + table.weather[j];
+            }
+        }
+        return sum;
+    }
+
+    private static long parseGson(Gson gson, String body, int iterations) {
+        long sum = 0;
+        for (int i = 0; i < iterations; i++) {
+            WeatherResult result = gson.fromJson(body, WeatherResult.class);
+            for (Weather weather : result.data) {
+                sum += weather.time + weather.area + weather.weather;
+            }
+        }
+        return sum;
+    }
+
+    private static String createBody() {
+        StringBuilder body = new StringBuilder("{\"data\":[");
+        for (int time = -1; time <= 3; time++) {
+            for (int area = 1; area <= 24; area++) {
+                if (body.charAt(body.length() - 1) != '[') {
+                    body.append(',');
+                }
+                body.append("{\"time\":").append(time).append(",\"area\":").append(area)
+                        .append(",\"weather\":").append((area * 7 + time) % 14 + 1).append('}');
+            }
+        }
+        return body.append("]}").toString();
+    }
+
+    /** The binding of the original WeatherApi. */
+    private static class WeatherResult {
+        List<Weather> data;
+    }
+
+    private static class Weather {
+        int time;
+        int area;
+        int weather;
+    }
+}
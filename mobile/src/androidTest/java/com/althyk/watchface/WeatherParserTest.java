@@ -0,0 +1,96 @@
+package com.althyk.watchface;
+
+import junit.framework.TestCase;
+
+import java.io.StringReader;
+
+/**
+ * Decoding of weather API responses by WeatherParser.
+ */
+public class WeatherParserTest extends TestCase {
+
+    public void testParsesEntriesInOrder() {
+        WeatherTable table = parse("{\"data\":[{\"time\":-1,\"area\":1,\"weather\":2},"
+                + "{\"time\":0,\"area\":24,\"weather\":14},{\"time\":3,\"area\":7,\"weather\":1}]}");
+        assertNotNull(table);
+        assertEquals(3, table.size);
+        assertEntry(table, 0, -1, 1, 2);
+        assertEntry(table, 1, 0, 24, 14);
+        assertEntry(table, 2, 3, 7, 1);
+    }
+
+    public void testKeyOrderDoesNotMatter() {
+        WeatherTable table = parse("{\"data\":[{\"weather\":5,\"time\":2,\"area\":9}]}");
+        assertNotNull(table);
+        assertEquals(1, table.size);
+        assertEntry(table, 0, 2, 9, 5);
+    }
+
+    public void testSkipsUnknownKeys() {
+        WeatherTable table = parse("{\"version\":2,\"meta\":{\"areas\":[1,2],\"name\":\"x\"},"
+                + "\"data\":[{\"time\":1,\"name\":\"Limsa\",\"extra\":{\"a\":[1,{\"b\":null}]},"
+                + "\"area\":3,\"chance\":0.5,\"weather\":4,\"final\":true}],\"next\":[]}");
+        assertNotNull(table);
+        assertEquals(1, table.size);
+        assertEntry(table, 0, 1, 3, 4);
+    }
+
+    public void testEmptyResponses() {
+        WeatherTable table = parse("{\"data\":[]}");
+        assertNotNull(table);
+        assertTrue(table.isEmpty());
+
+        table = parse("{}");
+        assertNotNull(table);
+        assertTrue(table.isEmpty());
+    }
+
+    public void testGrowsPastInitialCapacity() {
+        StringBuilder body = new StringBuilder("{\"data\":[");
+        int count = 1000;
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append("{\"time\":").append(i % 5 - 1).append(",\"area\":").append(i % 24 + 1)
+                    .append(",\"weather\":").append(i).append('}');
+        }
+        body.append("]}");
+        WeatherTable table = parse(body.toString());
+        assertNotNull(table);
+        assertEquals(count, table.size);
+        for (int i = 0; i < count; i++) {
+            assertEntry(table, i, i % 5 - 1, i % 24 + 1, i);
+        }
+    }
+
+    public void testMalformedReturnsNull() {
+        String[] malformed = {
+                "",
+                "[]",
+                "{\"data\":",
+                "{\"data\":[{\"time\":0,\"area\":1,\"weather\":2}",
+                "{\"data\":{}}",
+                "{\"data\":[1]}",
+                "{\"data\":[{\"time\":0,\"area\":1}]}",
+                "{\"data\":[{\"time\":\"now\",\"area\":1,\"weather\":2}]}",
+                "{\"data\":[{\"time\":0.5,\"area\":1,\"weather\":2}]}",
+                "{\"data\":[{\"time\":0,\"area\":null,\"weather\":2}]}",
+                "<html>503 Service Unavailable</html>",
+        };
+        for (String body : malformed) {
+            assertNull(body, parse(body));
+        }
+    }
+
+    private static WeatherTable parse(String body) {
+        return WeatherParser.parse(new StringReader(body));
+    }
+
+    private static void assertEntry(WeatherTable table, int index, int time, int area,
+            int weather) {
+        assertEquals("time " + index, time, table.time[index]);
+        assertEquals("area " + index, area, table.area[index]);
+        assertEquals("weather " + index, weather, table.weather[index]);
+    }
+}
@@ -0,0 +1,227 @@
+package com.althyk.watchface;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Disk-backed copy of the last weather API response. The response is valid for the ET weather
+ * window it was fetched in; after that it is kept to revalidate with a conditional request
+ * (If-None-Match / If-Modified-Since). It is written on a background executor to a temporary file
+ * and renamed, so the network callback never waits for the disk and a process death never leaves
+ * a half-written cache.
+ */
+final class ForecastCache {
+    private static final String TAG = "ForecastCache";
+
+    private static final String FILE_NAME = "forecast_cache";
+    private static final int VERSION = 1;
+
+    private static ForecastCache sInstance;
+
+    private final File mFile;
+
+    private int mSlot = -1;
+    private String mETag;
+    private String mLastModified;
+    private String mBody;
+
+    /* counters */
+    private long mHitCount = 0;
+    private long mNetworkCount = 0;
+    private long mNotModifiedCount = 0;
+    private long mDownloadedBytes = 0;
+
+    static synchronized ForecastCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ForecastCache(new File(context.getFilesDir(), FILE_NAME));
+            sInstance.load();
+        }
+        return sInstance;
+    }
+
+    private ForecastCache(File file) {
+        mFile = file;
+    }
+
+    /** Returns the cached body if it is still valid for the ET window slot, or null. */
+    synchronized String getValidBody(int slot) {
+        if (mBody != null && mSlot == slot) {
+            mHitCount++;
+            logCounts();
+            return mBody;
+        }
+        return null;
+    }
+
+    synchronized boolean hasBody() {
+        return mBody != null;
+    }
+
+    synchronized String getETag() {
+        return mETag;
+    }
+
+    synchronized String getLastModified() {
+        return mLastModified;
+    }
+
+    synchronized long getNotModifiedCount() {
+        return mNotModifiedCount;
+    }
+
+    synchronized long getDownloadedBytes() {
+        return mDownloadedBytes;
+    }
+
+    /** Stores a full (200) response. */
+    synchronized void put(int slot, String body, String eTag, String lastModified) {
+        mNetworkCount++;
+        mDownloadedBytes += utf8Length(body);
+        mSlot = slot;
+        mBody = body;
+        mETag = eTag;
+        mLastModified = lastModified;
+        save();
+        logCounts();
+    }
+
+    /** Marks the cached body as revalidated (304) for the slot and returns it. */
+    synchronized String revalidate(int slot) {
+        mNetworkCount++;
+        mNotModifiedCount++;
+        mSlot = slot;
+        save();
+        logCounts();
+        return mBody;
+    }
+
+    private void load() {
+        if (!mFile.exists()) {
+            return;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(mFile));
+            if (in.readInt() != VERSION) {
+                return;
+            }
+            int slot = in.readInt();
+            String eTag = readNullableString(in);
+            String lastModified = readNullableString(in);
+            String body = readNullableString(in);
+            mSlot = slot;
+            mETag = eTag;
+            mLastModified = lastModified;
+            mBody = body;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to load forecast cache", e);
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    // holding the lock
+    private void save() {
+        final int slot = mSlot;
+        final String eTag = mETag;
+        final String lastModified = mLastModified;
+        final String body = mBody;
+        // serial, so the last save wins
+        AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(slot, eTag, lastModified, body);
+            }
+        });
+    }
+
+    private void write(int slot, String eTag, String lastModified, String body) {
+        File tmpFile = new File(mFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new FileOutputStream(tmpFile));
+            out.writeInt(VERSION);
+            out.writeInt(slot);
+            writeNullableString(out, eTag);
+            writeNullableString(out, lastModified);
+            writeNullableString(out, body);
+            out.close();
+            out = null;
+            if (!tmpFile.renameTo(mFile)) {
+                Log.e(TAG, "Failed to rename forecast cache");
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to save forecast cache", e);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private void logCounts() {
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "hits: " + mHitCount + ", network: " + mNetworkCount
+                    + ", not modified: " + mNotModifiedCount + ", downloaded: " + mDownloadedBytes);
+        }
+    }
+
+    /** Returns the length of the string in UTF-8, as it came over the network. */
+    private static long utf8Length(String value) {
+        long length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    // body can exceed the 64KB limit of writeUTF, so strings are written as length + bytes
+    private static String readNullableString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+}
@@ -1,109 +1,187 @@
 package com.althyk.watchface;
 
-import android.os.Bundle;
 import android.util.Log;
 
 import com.althyk.watchfacecommon.DataSyncUtil;
 import com.althyk.watchfacecommon.ETime;
+import com.althyk.watchfacecommon.ForecastCodec;
 import com.althyk.watchfacecommon.MessageSender;
-import com.google.android.gms.common.ConnectionResult;
+import com.althyk.watchfacecommon.NodeDirectory;
+import com.althyk.watchfacecommon.WearableConnection;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.wearable.DataMap;
 import com.google.android.gms.wearable.MessageEvent;
-import com.google.android.gms.wearable.Wearable;
+import com.google.android.gms.wearable.Node;
 import com.google.android.gms.wearable.WearableListenerService;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
-public class MessageListenerService extends WearableListenerService
-        implements GoogleApiClient.ConnectionCallbacks, GoogleApiClient.OnConnectionFailedListener {
+public class MessageListenerService extends WearableListenerService {
     private static final String TAG = "MessageListenerService";
 
-    private GoogleApiClient mGoogleApiClient;
+    private WearableConnection mConnection;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        mConnection = WearableConnection.getInstance(this);
+        mConnection.acquire();
+    }
+
+    @Override
+    public void onDestroy() {
+        mConnection.release();
+        super.onDestroy();
+    }
 
     @Override // WearableListenerService
     public void onMessageReceived(MessageEvent messageEvent) {
 
-        // check PATH
-        if (!messageEvent.getPath().equals(DataSyncUtil.PATH_REQUEST_FETCH)) {
+        // metrics dump from a watch
+        if (messageEvent.getPath().equals(DataSyncUtil.PATH_DEBUG_METRICS_DUMP)) {
+            DataMap dataMap = DataMap.fromByteArray(messageEvent.getData());
+            Log.i(TAG, "metrics from " + messageEvent.getSourceNodeId() + ": "
+                    + dataMap.getString(DataSyncUtil.KEY_METRICS_DUMP));
             return;
         }
 
-        if (mGoogleApiClient == null) {
-            mGoogleApiClient = new GoogleApiClient.Builder(this).addConnectionCallbacks(this)
-                    .addOnConnectionFailedListener(this).addApi(Wearable.API).build();
-        }
-
-        if (!mGoogleApiClient.isConnected()) {
-            ConnectionResult connectionResult =
-                    mGoogleApiClient.blockingConnect(30, TimeUnit.SECONDS);
-            if (!connectionResult.isSuccess()) {
-                Log.e(TAG, "Failed to connect to GoogleApiClient.");
-                return;
-            }
+        // check PATH
+        if (!messageEvent.getPath().equals(DataSyncUtil.PATH_REQUEST_FETCH)) {
+            return;
         }
 
+        // the answer of every fetch goes to every node by its own subscription
+        byte[] rawData = messageEvent.getData();
+        DataMap request = rawData == null ? null : DataMap.fromByteArray(rawData);
+        NodeDirectory.getInstance().setSubscription(messageEvent.getSourceNodeId(),
+                new NodeDirectory.Subscription(DataSyncUtil.getSubscribedArea(request),
+                        DataSyncUtil.negotiateWireFormat(request)));
         fetchWeather();
     }
 
-    @Override // GoogleApiClient.ConnectionCallbacks
-    public void onConnected(Bundle connectionHint) {
-        if (Log.isLoggable(TAG, Log.DEBUG)) {
-            Log.d(TAG, "onConnected: " + connectionHint);
-        }
+    @Override // WearableListenerService
+    public void onPeerConnected(Node peer) {
+        NodeDirectory.getInstance().onPeerConnected(peer);
     }
 
-    @Override  // GoogleApiClient.ConnectionCallbacks
-    public void onConnectionSuspended(int cause) {
-        if (Log.isLoggable(TAG, Log.DEBUG)) {
-            Log.d(TAG, "onConnectionSuspended: " + cause);
-        }
+    @Override // WearableListenerService
+    public void onPeerDisconnected(Node peer) {
+        NodeDirectory.getInstance().onPeerDisconnected(peer);
     }
 
-    @Override  // GoogleApiClient.OnConnectionFailedListener
-    public void onConnectionFailed(ConnectionResult result) {
-        if (Log.isLoggable(TAG, Log.DEBUG)) {
-            Log.d(TAG, "onConnectionFailed: " + result);
-        }
+    private void fetchWeather() {
+        WeatherFetchCoalescer.getInstance().fetch(this, new WeatherApi.WeatherCallback() {
+            @Override
+            public void onResult(final WeatherTable weatherTable) {
+                if (weatherTable == null) {
+                    return;
+                }
+                mConnection.whenConnected(new WearableConnection.Callback() {
+                    @Override
+                    public void onConnected(GoogleApiClient client) {
+                        sendWeather(client, weatherTable);
+                    }
+                });
+            }
+        });
     }
 
+    /**
+     * Sends every subscribed node its own slice of the forecast. Nodes with the same subscription
+     * share one serialized message.
+     */
+    private void sendWeather(final GoogleApiClient client, final WeatherTable weatherTable) {
+        final NodeDirectory directory = NodeDirectory.getInstance();
+        directory.getConnectedNodes(client, new NodeDirectory.Callback() {
+            @Override
+            public void onNodes(List<String> nodeIds) {
+                // the window of the request, not of now: the response may be a window old by now
+                ETime etime = new ETime().setEtMillis(weatherTable.slot * ETime.WINDOW_IN_MILLIS);
+                HashMap<Long, byte[]> slices = new HashMap<>();
+                for (String nodeId : nodeIds) {
+                    NodeDirectory.Subscription subscription = directory.getSubscription(nodeId);
+                    if (subscription == null) {
+                        continue; // hasn't asked for the weather
+                    }
+                    Long key = (long) subscription.wireFormat << 32
+                            | (subscription.area & 0xffffffffL);
+                    byte[] rawData = slices.get(key);
+                    if (rawData == null) {
+                        rawData = subscription.wireFormat == DataSyncUtil.WIRE_FORMAT_PACKED
+                                ? buildPackedWeather(subscription.area, weatherTable)
+                                : buildWeatherList(etime, subscription.area, weatherTable);
+                        slices.put(key, rawData);
+                    }
+                    MessageSender.sendMessage(client, nodeId, DataSyncUtil.PATH_DATA_WEATHER,
+                            rawData);
+                }
+            }
+        });
+    }
 
-    private void fetchWeather() {
-        ETime etime = new ETime().setToNow().generateStartET();
-        final ArrayList<ETime> etimeList = new ArrayList<>();
+    /** Builds the forecast of the area (or of every area for AREA_ALL) as a list of DataMaps. */
+    private static byte[] buildWeatherList(ETime etime, int area, WeatherTable weatherTable) {
+        ArrayList<ETime> etimeList = new ArrayList<>();
         for (int i = -1; i < 4; i++) {
             etimeList.add(new ETime().setEtMillis(etime.time + ETime.HOUR_IN_MILLIS * 8 * i));
         }
 
-        WeatherApi.getWeatherList(this, new WeatherApi.WeatherCallback() {
-            @Override
-            public void onResult(List<WeatherApi.Weather> weatherList) {
-                ArrayList<DataMap> dataMapList = new ArrayList<>();
+        ArrayList<DataMap> dataMapList = new ArrayList<>();
 
-                for (WeatherApi.Weather weather : weatherList) {
-                    DataMap dataMap = new DataMap();
+        for (int i = 0; i < weatherTable.size; i++) {
+            int timeIndex = weatherTable.time[i] + 1; // time range is [-1, 3]
+            if (timeIndex < 0 || timeIndex >= etimeList.size()) {
+                continue;
+            }
+            if (area != DataSyncUtil.AREA_ALL && weatherTable.area[i] != area) {
+                continue;
+            }
+            DataMap dataMap = new DataMap();
 
-                    // weather information
-                    dataMap.putInt(DataSyncUtil.KEY_WEATHER_ID, weather.weather);
-                    dataMap.putInt(DataSyncUtil.KEY_WEATHER_AREA, weather.area);
+            // weather information
+            dataMap.putInt(DataSyncUtil.KEY_WEATHER_ID, weatherTable.weather[i]);
+            dataMap.putInt(DataSyncUtil.KEY_WEATHER_AREA, weatherTable.area[i]);
 
-                    // time information
-                    ETime time = etimeList.get(weather.time + 1); // time range is [-1, 3]
-                    dataMap.putInt(DataSyncUtil.KEY_WEATHER_YEAR, time.year);
-                    dataMap.putInt(DataSyncUtil.KEY_WEATHER_MONTH, time.month);
-                    dataMap.putInt(DataSyncUtil.KEY_WEATHER_DAY, time.day);
-                    dataMap.putInt(DataSyncUtil.KEY_WEATHER_HOUR, time.hour);
+            // time information
+            ETime time = etimeList.get(timeIndex);
+            dataMap.putInt(DataSyncUtil.KEY_WEATHER_YEAR, time.year);
+            dataMap.putInt(DataSyncUtil.KEY_WEATHER_MONTH, time.month);
+            dataMap.putInt(DataSyncUtil.KEY_WEATHER_DAY, time.day);
+            dataMap.putInt(DataSyncUtil.KEY_WEATHER_HOUR, time.hour);
 
-                    dataMapList.add(dataMap);
-                }
+            dataMapList.add(dataMap);
+        }
+
+        DataMap dataMap = new DataMap();
+        dataMap.putDataMapArrayList(DataSyncUtil.KEY_WEATHER_LIST, dataMapList);
+        return dataMap.toByteArray();
+    }
 
-                DataMap dataMap = new DataMap();
-                dataMap.putDataMapArrayList(DataSyncUtil.KEY_WEATHER_LIST, dataMapList);
-                MessageSender.sendMessage(mGoogleApiClient, DataSyncUtil.PATH_DATA_WEATHER, dataMap);
+    /**
+     * Builds the forecast of the area (or of every area for AREA_ALL) as a ForecastCodec byte
+     * array, relative to the window of the request.
+     */
+    private static byte[] buildPackedWeather(int area, WeatherTable weatherTable) {
+        int baseSlot = weatherTable.slot;
+        int expectedCount = area == DataSyncUtil.AREA_ALL
+                ? weatherTable.size : DataSyncUtil.FORECAST_WINDOWS;
+        ForecastCodec.Writer writer = new ForecastCodec.Writer(baseSlot, expectedCount);
+        for (int i = 0; i < weatherTable.size; i++) {
+            int timeOffset = weatherTable.time[i]; // time range is [-1, 3]
+            if (timeOffset < -1 || timeOffset > 3) {
+                continue;
             }
-        });
+            if (area != DataSyncUtil.AREA_ALL && weatherTable.area[i] != area) {
+                continue;
+            }
+            writer.add(baseSlot + timeOffset, weatherTable.area[i], weatherTable.weather[i]);
+        }
+
+        DataMap dataMap = new DataMap();
+        dataMap.putByteArray(DataSyncUtil.KEY_WEATHER_PACKED, writer.toByteArray());
+        return dataMap.toByteArray();
     }
 
 }
@@ -3,43 +3,117 @@ package com.althyk.watchface;
 import android.content.Context;
 import android.util.Log;
 
-import com.google.gson.reflect.TypeToken;
+import com.althyk.watchfacecommon.ETime;
 import com.koushikdutta.async.future.FutureCallback;
 import com.koushikdutta.ion.Ion;
+import com.koushikdutta.ion.Response;
+import com.koushikdutta.ion.builder.Builders;
 
-import java.util.List;
+import java.io.StringReader;
 
 public final class WeatherApi {
     private final static String TAG = "WeatherApi";
 
-    public static class Weather {
-        int time;
-        int area;
-        int weather;
-    }
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_NOT_MODIFIED = 304;
+
+    // for tests, replaces R.string.weather_api_endpoint
+    private static volatile String sEndpointForTesting;
+    // for tests, sees every full response
+    private static volatile ResponseListener sResponseListenerForTesting;
 
     public interface WeatherCallback {
-        void onResult(List<Weather> weatherList);
+        // weatherTable is null if the request failed
+        void onResult(WeatherTable weatherTable);
     }
 
+    interface ResponseListener {
+        // requestedAt is the LT millis the request was made at
+        void onResponse(long requestedAt, String body);
+    }
+
+    /**
+     * Returns the weather list of the current ET weather window. It is answered from
+     * {@link ForecastCache} while the cached response is valid, and revalidated with a
+     * conditional request otherwise.
+     */
     public static final void getWeatherList(final Context context, final WeatherCallback callback) {
+        final ForecastCache cache = ForecastCache.getInstance(context);
+        final long requestedAt = System.currentTimeMillis();
+        final int slot = ETime.getTimeSlot(requestedAt);
+
+        String cachedBody = cache.getValidBody(slot);
+        if (cachedBody != null) {
+            callback.onResult(parse(cachedBody, slot));
+            return;
+        }
 
-        String url = context.getResources().getString(R.string.weather_api_endpoint);
+        String url = sEndpointForTesting != null
+                ? sEndpointForTesting
+                : context.getResources().getString(R.string.weather_api_endpoint);
 
-        Ion.with(context)
+        Builders.Any.B request = Ion.with(context)
                 .load(url)
-                .as(new TypeToken<WeatherResult>(){})
-                .setCallback(new FutureCallback<WeatherResult>() {
+                .noCache(); // validity is handled by ForecastCache
+        if (cache.hasBody()) {
+            if (cache.getETag() != null) {
+                request.setHeader("If-None-Match", cache.getETag());
+            }
+            if (cache.getLastModified() != null) {
+                request.setHeader("If-Modified-Since", cache.getLastModified());
+            }
+        }
+
+        request.asString()
+                .withResponse()
+                .setCallback(new FutureCallback<Response<String>>() {
                     @Override
-                    public void onCompleted(Exception e, WeatherResult result) {
-                        callback.onResult(result.data);
+                    public void onCompleted(Exception e, Response<String> response) {
+                        if (e != null || response == null) {
+                            Log.e(TAG, "Failed to fetch weather", e);
+                            callback.onResult(null);
+                            return;
+                        }
+
+                        int code = response.getHeaders().code();
+                        String body;
+                        if (code == HTTP_NOT_MODIFIED && cache.hasBody()) {
+                            body = cache.revalidate(slot);
+                        } else if (code == HTTP_OK && response.getResult() != null) {
+                            body = response.getResult();
+                            cache.put(slot, body,
+                                    response.getHeaders().getHeaders().get("ETag"),
+                                    response.getHeaders().getHeaders().get("Last-Modified"));
+                            ResponseListener listener = sResponseListenerForTesting;
+                            if (listener != null) {
+                                listener.onResponse(requestedAt, body);
+                            }
+                        } else {
+                            Log.e(TAG, "Failed to fetch weather: " + code);
+                            callback.onResult(null);
+                            return;
+                        }
+                        callback.onResult(parse(body, slot));
                     }
                 });
+    }
+
+    /** Points the requests at a test server, or back at the real endpoint if url is null. */
+    static void setEndpointForTesting(String url) {
+        sEndpointForTesting = url;
+    }
 
+    /** Passes every full (200) response to listener, or stops if listener is null. */
+    static void setResponseListenerForTesting(ResponseListener listener) {
+        sResponseListenerForTesting = listener;
     }
 
-    private static class WeatherResult {
-        List<Weather> data;
+    private static WeatherTable parse(String body, int slot) {
+        WeatherTable table = WeatherParser.parse(new StringReader(body));
+        if (table != null) {
+            table.slot = slot;
+        }
+        return table;
     }
 
 }
@@ -0,0 +1,95 @@
+package com.althyk.watchface;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Single-flight front of {@link WeatherApi}. Requests that arrive while a fetch is in flight are
+ * merged into it, since its result is sent to every subscribed node anyway. A fresh response (same
+ * ET weather window) is answered by {@link ForecastCache} inside WeatherApi without a request.
+ */
+final class WeatherFetchCoalescer {
+    private static final String TAG = "WeatherFetchCoalescer";
+
+    private static final WeatherFetchCoalescer sInstance = new WeatherFetchCoalescer();
+
+    private final Object mLock = new Object();
+    private boolean mInFlight = false;
+
+    private long mRequestCount = 0;
+    private long mSavedCount = 0;
+
+    static WeatherFetchCoalescer getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Fetches the weather list. Returns false without calling back if the request was merged
+     * into a fetch in flight. If the fetch fails before it is issued, callback gets null.
+     */
+    boolean fetch(Context context, final WeatherApi.WeatherCallback callback) {
+        synchronized (mLock) {
+            mRequestCount++;
+            if (mInFlight) {
+                mSavedCount++;
+                logCounts();
+                return false;
+            }
+            mInFlight = true;
+            logCounts();
+        }
+
+        // set by whichever ends the flight first: the callback, or a synchronous failure
+        final AtomicBoolean finished = new AtomicBoolean(false);
+        try {
+            WeatherApi.getWeatherList(context.getApplicationContext(),
+                    new WeatherApi.WeatherCallback() {
+                        @Override
+                        public void onResult(WeatherTable weatherTable) {
+                            if (!finished.compareAndSet(false, true)) {
+                                return;
+                            }
+                            endFlight();
+                            callback.onResult(weatherTable);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            if (!finished.compareAndSet(false, true)) {
+                throw e; // thrown by our callback, the flight has already ended
+            }
+            // nothing will call back, so the next request must not be merged into this one
+            endFlight();
+            Log.e(TAG, "Failed to fetch weather", e);
+            callback.onResult(null);
+        }
+        return true;
+    }
+
+    private void endFlight() {
+        synchronized (mLock) {
+            mInFlight = false;
+        }
+    }
+
+    long getRequestCount() {
+        synchronized (mLock) {
+            return mRequestCount;
+        }
+    }
+
+    long getSavedCount() {
+        synchronized (mLock) {
+            return mSavedCount;
+        }
+    }
+
+    private void logCounts() {
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "requests: " + mRequestCount + ", saved: " + mSavedCount);
+        }
+    }
+
+    private WeatherFetchCoalescer() { }
+}
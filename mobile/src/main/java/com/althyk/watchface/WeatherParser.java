@@ -0,0 +1,85 @@
+package com.althyk.watchface;
+
+import android.util.JsonReader;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Streaming, reflection-free decoder of the weather API response:
+ * {"data": [{"time": -1, "area": 1, "weather": 2}, ...]}
+ * Entries are written straight into a {@link WeatherTable}; unknown keys are skipped.
+ */
+final class WeatherParser {
+    private static final String TAG = "WeatherParser";
+
+    private static final String KEY_DATA    = "data";
+    private static final String KEY_TIME    = "time";
+    private static final String KEY_AREA    = "area";
+    private static final String KEY_WEATHER = "weather";
+
+    /** Returns the parsed table, or null if the input is malformed. */
+    static WeatherTable parse(Reader reader) {
+        JsonReader json = new JsonReader(reader);
+        WeatherTable table = new WeatherTable();
+        try {
+            json.beginObject();
+            while (json.hasNext()) {
+                if (KEY_DATA.equals(json.nextName())) {
+                    readData(json, table);
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+            return table;
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            Log.e(TAG, "Malformed weather response", e);
+            return null;
+        } finally {
+            try {
+                json.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    private static void readData(JsonReader json, WeatherTable table) throws IOException {
+        json.beginArray();
+        while (json.hasNext()) {
+            int time = Integer.MIN_VALUE;
+            int area = Integer.MIN_VALUE;
+            int weather = Integer.MIN_VALUE;
+
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case KEY_TIME:
+                        time = json.nextInt();
+                        break;
+                    case KEY_AREA:
+                        area = json.nextInt();
+                        break;
+                    case KEY_WEATHER:
+                        weather = json.nextInt();
+                        break;
+                    default:
+                        json.skipValue();
+                        break;
+                }
+            }
+            json.endObject();
+
+            if (time == Integer.MIN_VALUE || area == Integer.MIN_VALUE
+                    || weather == Integer.MIN_VALUE) {
+                throw new IllegalStateException("Incomplete weather entry");
+            }
+            table.add(time, area, weather);
+        }
+        json.endArray();
+    }
+
+    private WeatherParser() { }
+}
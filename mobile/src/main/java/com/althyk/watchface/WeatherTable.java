@@ -0,0 +1,43 @@
+package com.althyk.watchface;
+
+/**
+ * Weather list of the API response as a structure of arrays.
+ * time is relative to the ET weather window slot ([-1, 3]), area is the area id and weather is
+ * the weather id.
+ */
+final class WeatherTable {
+    private static final int INITIAL_CAPACITY = 128; // 24 areas * 5 windows fit without growing
+
+    int slot = -1; // the window the request was made in, which time is relative to
+    int size = 0;
+    int[] time = new int[INITIAL_CAPACITY];
+    int[] area = new int[INITIAL_CAPACITY];
+    int[] weather = new int[INITIAL_CAPACITY];
+
+    void add(int time, int area, int weather) {
+        if (size == this.time.length) {
+            grow();
+        }
+        this.time[size] = time;
+        this.area[size] = area;
+        this.weather[size] = weather;
+        size++;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void grow() {
+        int capacity = size * 2;
+        int[] newTime = new int[capacity];
+        int[] newArea = new int[capacity];
+        int[] newWeather = new int[capacity];
+        System.arraycopy(time, 0, newTime, 0, size);
+        System.arraycopy(area, 0, newArea, 0, size);
+        System.arraycopy(weather, 0, newWeather, 0, size);
+        time = newTime;
+        area = newArea;
+        weather = newWeather;
+    }
+}
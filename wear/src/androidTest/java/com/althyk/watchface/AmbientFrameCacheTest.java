@@ -0,0 +1,155 @@
+package com.althyk.watchface;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.SystemClock;
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+/**
+ * Hits, misses and double buffering of AmbientFrameCache, and what a hit saves: the time to
+ * render an ambient base frame, which a miss costs the main thread, against the time to blit a
+ * prepared one. The times are logged under the tag "Benchmark".
+ */
+public class AmbientFrameCacheTest extends TestCase {
+    private static final String TAG = "Benchmark";
+
+    private static final int SIZE = 320;
+    private static final long TIMEOUT_MS = 5000;
+    private static final int RENDERS = 24;
+    private static final int BLITS = 200;
+
+    private final Rect mBounds = new Rect(0, 0, SIZE, SIZE);
+    private AmbientFrameCache mCache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        String[] hourLabels = new String[24];
+        float[] halfWidths = new float[24];
+        float[] halfHeights = new float[24];
+        Paint textPaint = new Paint();
+        textPaint.setTextSize(20f);
+        Rect textBounds = new Rect();
+        for (int hour = 0; hour < 24; hour++) {
+            hourLabels[hour] = String.valueOf(hour);
+            textPaint.getTextBounds(hourLabels[hour], 0, hourLabels[hour].length(), textBounds);
+            halfWidths[hour] = textBounds.width() / 2f;
+            halfHeights[hour] = textBounds.height() / 2f;
+        }
+        Paint tickPaint = new Paint();
+        tickPaint.setStrokeWidth(2f);
+        tickPaint.setAntiAlias(true);
+        Paint accentPaint = new Paint(tickPaint);
+        accentPaint.setStrokeWidth(5f);
+        mCache = new AmbientFrameCache(tickPaint, new Paint(tickPaint), accentPaint, textPaint,
+                hourLabels, halfWidths, halfHeights);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mCache.quit();
+        super.tearDown();
+    }
+
+    public void testMissUntilPrepared() {
+        assertNull(get(3, 0));
+        mCache.prepare(mBounds, step(3), 3, true, 0);
+        Bitmap frame = awaitFrame(3, 0);
+        assertEquals(SIZE, frame.getWidth());
+        assertEquals(SIZE, frame.getHeight());
+
+        // every part of the key counts
+        assertNull(get(4, 0));
+        assertNull(get(3, AmbientFrameCache.VARIANT_LOW_BIT));
+        assertNull(mCache.get(mBounds, step(3), 3, false, 0));
+        assertNull(mCache.get(new Rect(0, 0, SIZE, SIZE - 40), step(3), 3, true, 0));
+        assertSame(frame, get(3, 0));
+    }
+
+    public void testShownFrameIsNeverOverwritten() {
+        mCache.prepare(mBounds, step(1), 1, true, 0);
+        Bitmap first = awaitFrame(1, 0);
+        Bitmap firstPixels = first.copy(Bitmap.Config.ARGB_8888, false);
+
+        mCache.prepare(mBounds, step(2), 2, true, 0);
+        Bitmap second = awaitFrame(2, 0);
+        assertNotSame(first, second);
+        assertSame(first, get(1, 0)); // shows the first frame again
+
+        // renders into the buffer of the second frame, as the first one is shown
+        mCache.prepare(mBounds, step(3), 3, true, 0);
+        Bitmap third = awaitFrame(3, 0);
+        assertSame(second, third);
+        assertNull(get(2, 0));
+        assertSame(first, get(1, 0));
+        assertTrue(first.sameAs(firstPixels));
+    }
+
+    public void testResize() {
+        mCache.prepare(mBounds, step(5), 5, true, 0);
+        awaitFrame(5, 0);
+        Rect smaller = new Rect(0, 0, SIZE - 40, SIZE - 40);
+        mCache.prepare(smaller, step(6), 6, true, 0);
+        Bitmap frame = awaitFrame(smaller, 6, 0);
+        assertEquals(SIZE - 40, frame.getWidth());
+        assertEquals(SIZE - 40, frame.getHeight());
+    }
+
+    public void testRenderAgainstBlit() {
+        // alternating buffers; the variants cover the paints the watch uses in ambient mode
+        int[] variants = {0, AmbientFrameCache.VARIANT_LOW_BIT,
+                AmbientFrameCache.VARIANT_LOW_BIT | AmbientFrameCache.VARIANT_BURN_IN};
+        for (int variant : variants) {
+            mCache.prepare(mBounds, step(0), 0, true, variant);
+            awaitFrame(0, variant); // warm-up
+
+            long renderNanos = 0;
+            for (int hour = 1; hour <= RENDERS; hour++) {
+                long start = System.nanoTime();
+                mCache.prepare(mBounds, step(hour % 24), hour % 24, true, variant);
+                awaitFrame(hour % 24, variant);
+                renderNanos += System.nanoTime() - start;
+            }
+
+            Bitmap frame = get(RENDERS % 24, variant);
+            Canvas canvas = new Canvas(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+            canvas.drawBitmap(frame, 0, 0, null);
+            long start = System.nanoTime();
+            for (int i = 0; i < BLITS; i++) {
+                canvas.drawBitmap(frame, 0, 0, null);
+            }
+            long blitNanos = System.nanoTime() - start;
+
+            Log.i(TAG, "Ambient base " + SIZE + "px, variant " + variant + ": render "
+                    + renderNanos / RENDERS / 1000 + " us (upper bound, includes the hand-off),"
+                    + " blit " + blitNanos / BLITS / 1000 + " us");
+        }
+    }
+
+    private static int step(int etHour) {
+        return etHour * AnalogGeometry.ET_HOUR_IN_STEPS % AnalogGeometry.RING_STEPS;
+    }
+
+    private Bitmap get(int etHour, int variant) {
+        return mCache.get(mBounds, step(etHour), etHour, true, variant);
+    }
+
+    private Bitmap awaitFrame(int etHour, int variant) {
+        return awaitFrame(mBounds, etHour, variant);
+    }
+
+    /** Polls until the frame is ready; this also makes it the shown frame. */
+    private Bitmap awaitFrame(Rect bounds, int etHour, int variant) {
+        long deadline = SystemClock.uptimeMillis() + TIMEOUT_MS;
+        Bitmap frame;
+        while ((frame = mCache.get(bounds, step(etHour), etHour, true, variant)) == null) {
+            assertTrue("frame of ET hour " + etHour, SystemClock.uptimeMillis() < deadline);
+            Thread.yield();
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,129 @@
+package com.althyk.watchface;
+
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.wearable.watchface.CanvasWatchFaceService;
+import android.test.ServiceTestCase;
+
+import com.althyk.watchfacecommon.MetricsRecorder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Draws frames of the visible, interactive analog engine on the main thread and checks, through
+ * the allocation count MetricsRecorder keeps around onDraw(), that a frame allocates nothing once
+ * the layer exists. Frames cover the face with the weather ring of an area, with the layer redrawn
+ * every few frames, and the face without a ring (area 0). Ambient frames come from
+ * AmbientFrameCache and aren't covered.
+ *
+ * Visibility, area and frames are set in one main thread task, so that the engine's connection
+ * callbacks can't switch the area in between.
+ */
+public class AnalogDrawAllocationTest extends ServiceTestCase<AlthykAnalogWatchFaceService> {
+    private static final int SIZE = 320;
+    private static final int FRAMES = 100;
+    private static final int LAYER_REDRAW_INTERVAL = 10;
+
+    private CanvasWatchFaceService.Engine mEngine;
+    private Canvas mCanvas;
+    private final Rect mBounds = new Rect(0, 0, SIZE, SIZE);
+    private final Bundle mProperties = new Bundle();
+
+    public AnalogDrawAllocationTest() {
+        super(AlthykAnalogWatchFaceService.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mCanvas = new Canvas(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                startService(new Intent(getContext(), AlthykAnalogWatchFaceService.class));
+                mEngine = (CanvasWatchFaceService.Engine) getService().onCreateEngine();
+                mEngine.onCreate(mEngine.getSurfaceHolder());
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        MetricsRecorder.setEnabled(false);
+        MetricsRecorder.setAllocCountingEnabled(false);
+        MetricsRecorder.reset();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mEngine.onVisibilityChanged(false);
+                mEngine.onDestroy();
+            }
+        });
+        super.tearDown();
+    }
+
+    public void testWeatherFramesDoNotAllocate() throws Exception {
+        assertEquals(0, countFrameAllocations(1));
+    }
+
+    public void testFramesWithoutRingDoNotAllocate() throws Exception {
+        assertEquals(0, countFrameAllocations(0));
+    }
+
+    /**
+     * Shows the area on the visible engine, draws FRAMES frames after a warm-up frame and returns
+     * what they allocated.
+     */
+    private long countFrameAllocations(final int area) throws Exception {
+        final long[] result = new long[2];
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mEngine.onVisibilityChanged(true);
+                ((AreaSelection.Listener) mEngine).onAreaSelected(area);
+                mEngine.onDraw(mCanvas, mBounds); // creates the layer
+                MetricsRecorder.reset();
+                MetricsRecorder.setEnabled(true);
+                MetricsRecorder.setAllocCountingEnabled(true);
+                for (int i = 0; i < FRAMES; i++) {
+                    if (i % LAYER_REDRAW_INTERVAL == 0) {
+                        mEngine.onPropertiesChanged(mProperties); // marks the layer dirty
+                    }
+                    mEngine.onDraw(mCanvas, mBounds);
+                }
+                MetricsRecorder.setAllocCountingEnabled(false);
+                MetricsRecorder.setEnabled(false);
+                result[0] = MetricsRecorder.get(MetricsRecorder.COUNTER_FRAMES);
+                result[1] = MetricsRecorder.get(MetricsRecorder.COUNTER_ALLOCATIONS);
+            }
+        });
+        assertEquals(FRAMES, result[0]);
+        return result[1];
+    }
+
+    private static void runOnMainSync(final Runnable runnable) throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Throwable[] error = new Throwable[1];
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runnable.run();
+                } catch (Throwable t) {
+                    error[0] = t;
+                }
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        if (error[0] != null) {
+            throw new AssertionError(error[0]);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.althyk.watchface;
+
+import android.graphics.Rect;
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+/**
+ * Times the per-frame geometry of the analog face: the end points of the 12 LT ticks, the 20 ET
+ * ticks, the 20 weather icons and the two hands, computed with trigonometry as the face used to
+ * and read from AnalogGeometry. Results are logged as ns per frame under the tag "Benchmark".
+ */
+public class AnalogGeometryBenchmark extends TestCase {
+    private static final String TAG = "Benchmark";
+
+    private static final double LT_MS_IN_RAD = 2 * Math.PI / (1000 * 60 * 60);
+    private static final long ET_HOUR_IN_LT_MS = 1000 * 60 * 70 / 24;
+    private static final double ET_HOUR_IN_RAD = LT_MS_IN_RAD * ET_HOUR_IN_LT_MS;
+
+    private static final int WARMUP_FRAMES = 20000;
+    private static final int FRAMES = 100000;
+
+    private final float[] mOut = new float[4];
+
+    public void testFrameGeometry() {
+        AnalogGeometry geometry = new AnalogGeometry();
+        geometry.update(new Rect(0, 0, 320, 320));
+
+        trigFrames(WARMUP_FRAMES);
+        long start = System.nanoTime();
+        float trig = trigFrames(FRAMES);
+        long trigNanos = System.nanoTime() - start;
+
+        tableFrames(geometry, WARMUP_FRAMES);
+        start = System.nanoTime();
+        float table = tableFrames(geometry, FRAMES);
+        long tableNanos = System.nanoTime() - start;
+
+        Log.i(TAG, "AnalogGeometry: trig " + trigNanos / FRAMES + " ns/frame, table "
+                + tableNanos / FRAMES + " ns/frame (" + trig + ", " + table + ")");
+    }
+
+    private float trigFrames(int frames) {
+        float centerX = 160f;
+        float sum = 0;
+        for (int frame = 0; frame < frames; frame++) {
+            long ms = frame * 1000L;
+            double startRad = (ms % (60 * 60 * 1000)) * LT_MS_IN_RAD;
+            for (int tickIndex = 0; tickIndex < 12; tickIndex++) {
+                float tickRot = (float) (tickIndex * Math.PI * 2 / 12);
+                mOut[0] = (float) Math.sin(tickRot) * (centerX - 100);
+                mOut[1] = (float) -Math.cos(tickRot) * (centerX - 100);
+                sum += mOut[0] + mOut[1];
+            }
+            for (int etTickIndex = 0; etTickIndex < 20; etTickIndex++) {
+                float tickRot = (float) (startRad + etTickIndex * ET_HOUR_IN_RAD);
+                mOut[0] = (float) Math.sin(tickRot) * (centerX - 20);
+                mOut[1] = (float) -Math.cos(tickRot) * (centerX - 20);
+                mOut[2] = (float) Math.sin(tickRot + ET_HOUR_IN_RAD / 2f) * (centerX - 15);
+                mOut[3] = (float) -Math.cos(tickRot + ET_HOUR_IN_RAD / 2f) * (centerX - 15);
+                sum += mOut[0] + mOut[1] + mOut[2] + mOut[3];
+            }
+            int minute = frame / 60 % 60;
+            int second = frame % 60;
+            float minRot = (minute / 30f + second / 1800f) * (float) Math.PI;
+            float hrRot = ((frame / 3600 % 24 + (minute / 60f)) / 6f) * (float) Math.PI;
+            sum += (float) Math.sin(minRot) - (float) Math.cos(minRot)
+                    + (float) Math.sin(hrRot) - (float) Math.cos(hrRot);
+        }
+        return sum;
+    }
+
+    private float tableFrames(AnalogGeometry geometry, int frames) {
+        float sum = 0;
+        for (int frame = 0; frame < frames; frame++) {
+            long ms = frame * 1000L;
+            int startStep = AnalogGeometry.ringStep(ms);
+            for (int tickIndex = 0; tickIndex < 12; tickIndex++) {
+                sum += geometry.ltTicks[tickIndex * 4] + geometry.ltTicks[tickIndex * 4 + 1];
+            }
+            for (int etTickIndex = 0; etTickIndex < 20; etTickIndex++) {
+                int step = (startStep + etTickIndex * AnalogGeometry.ET_HOUR_IN_STEPS)
+                        % AnalogGeometry.RING_STEPS;
+                int iconStep = (step + AnalogGeometry.ET_HOUR_IN_STEPS / 2)
+                        % AnalogGeometry.RING_STEPS;
+                sum += geometry.etTicks[step * 4] + geometry.etTicks[step * 4 + 1]
+                        + geometry.weatherAnchors[iconStep * 2]
+                        + geometry.weatherAnchors[iconStep * 2 + 1];
+            }
+            int minute = frame / 60 % 60;
+            int second = frame % 60;
+            int minStep = AnalogGeometry.minuteHandStep(minute, second);
+            int hrStep = AnalogGeometry.hourHandStep(frame / 3600 % 24, minute);
+            sum += AnalogGeometry.handSin(minStep) - AnalogGeometry.handCos(minStep)
+                    + AnalogGeometry.handSin(hrStep) - AnalogGeometry.handCos(hrStep);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,110 @@
+package com.althyk.watchface;
+
+import android.graphics.Rect;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the tables of AnalogGeometry against the trigonometry the face used to do per frame.
+ */
+public class AnalogGeometryTest extends TestCase {
+    private static final double LT_MS_IN_RAD = 2 * Math.PI / (1000 * 60 * 60);
+    private static final long LT_HOUR_IN_LT_MS = 1000 * 60 * 60;
+    private static final long ET_HOUR_IN_LT_MS = 1000 * 60 * 70 / 24;
+    private static final double ET_HOUR_IN_RAD = LT_MS_IN_RAD * ET_HOUR_IN_LT_MS;
+
+    private static final float EPSILON = 1e-3f; // pixels
+
+    public void testRingStepsMatchEtTicks() {
+        assertEquals(ET_HOUR_IN_LT_MS, AnalogGeometry.ET_HOUR_IN_STEPS
+                * AnalogGeometry.RING_STEP_IN_LT_MS);
+        for (long ms = 0; ms < LT_HOUR_IN_LT_MS * 2; ms += ET_HOUR_IN_LT_MS) {
+            double startRad = (ms % LT_HOUR_IN_LT_MS) * LT_MS_IN_RAD;
+            int step = AnalogGeometry.ringStep(ms);
+            assertEquals((float) startRad, (float) (2 * Math.PI * step / AnalogGeometry.RING_STEPS),
+                    1e-6f);
+        }
+    }
+
+    public void testHands() {
+        float length = 120f;
+        for (int hour = 0; hour < 24; hour++) {
+            for (int minute = 0; minute < 60; minute++) {
+                float hrRot = ((hour + (minute / 60f)) / 6f) * (float) Math.PI;
+                int hrStep = AnalogGeometry.hourHandStep(hour, minute);
+                assertEquals((float) Math.sin(hrRot) * length,
+                        AnalogGeometry.handSin(hrStep) * length, EPSILON);
+                assertEquals((float) -Math.cos(hrRot) * length,
+                        -AnalogGeometry.handCos(hrStep) * length, EPSILON);
+            }
+        }
+        for (int minute = 0; minute < 60; minute++) {
+            for (int second = 0; second < 60; second++) {
+                float minRot = (minute / 30f + second / 1800f) * (float) Math.PI;
+                int minStep = AnalogGeometry.minuteHandStep(minute, second);
+                assertEquals((float) Math.sin(minRot) * length,
+                        AnalogGeometry.handSin(minStep) * length, EPSILON);
+                assertEquals((float) -Math.cos(minRot) * length,
+                        -AnalogGeometry.handCos(minStep) * length, EPSILON);
+            }
+        }
+    }
+
+    public void testTicksAndAnchors() {
+        AnalogGeometry geometry = new AnalogGeometry();
+        assertTrue(geometry.update(new Rect(0, 0, 320, 320)));
+        float centerX = geometry.centerX;
+        float centerY = geometry.centerY;
+
+        for (int tickIndex = 0; tickIndex < AnalogGeometry.LT_TICK_COUNT; tickIndex++) {
+            float tickRot = (float) (tickIndex * Math.PI * 2 / 12);
+            assertEquals(centerX + (float) Math.sin(tickRot) * (centerX - 100),
+                    geometry.ltTicks[tickIndex * 4], EPSILON);
+            assertEquals(centerY + (float) -Math.cos(tickRot) * (centerX - 100),
+                    geometry.ltTicks[tickIndex * 4 + 1], EPSILON);
+            assertEquals(centerX + (float) Math.sin(tickRot) * (centerX - 90),
+                    geometry.ltTicks[tickIndex * 4 + 2], EPSILON);
+            assertEquals(centerY + (float) -Math.cos(tickRot) * (centerX - 90),
+                    geometry.ltTicks[tickIndex * 4 + 3], EPSILON);
+        }
+
+        for (long ms = 0; ms < LT_HOUR_IN_LT_MS; ms += ET_HOUR_IN_LT_MS) {
+            double startRad = (ms % LT_HOUR_IN_LT_MS) * LT_MS_IN_RAD;
+            int startStep = AnalogGeometry.ringStep(ms);
+            for (int etTickIndex = 0; etTickIndex < 20; etTickIndex++) {
+                float tickRot = (float) (startRad + etTickIndex * ET_HOUR_IN_RAD);
+                int step = (startStep + etTickIndex * AnalogGeometry.ET_HOUR_IN_STEPS)
+                        % AnalogGeometry.RING_STEPS;
+                assertLine(geometry.etTicks, step, tickRot, centerX - 20, centerX - 10);
+                assertLine(geometry.etWeatherTicks, step, tickRot, centerX - 15, centerX - 14);
+                assertPoint(geometry.etTextAnchors, step, tickRot, centerX - 40);
+
+                float iconRot = tickRot + (float) ET_HOUR_IN_RAD / 2f;
+                int iconStep = (step + AnalogGeometry.ET_HOUR_IN_STEPS / 2)
+                        % AnalogGeometry.RING_STEPS;
+                assertPoint(geometry.weatherAnchors, iconStep, iconRot, centerX - 15);
+            }
+        }
+    }
+
+    public void testUpdateOnlyOnNewBounds() {
+        AnalogGeometry geometry = new AnalogGeometry();
+        assertTrue(geometry.update(new Rect(0, 0, 320, 320)));
+        assertFalse(geometry.update(new Rect(0, 0, 320, 320)));
+        assertTrue(geometry.update(new Rect(0, 0, 280, 280)));
+        assertEquals(140f, geometry.centerX, 0f);
+        assertEquals(100f, geometry.minuteHandLength, 0f);
+    }
+
+    private static void assertLine(float[] lines, int step, float rot, float inner, float outer) {
+        assertEquals((float) Math.sin(rot) * inner, lines[step * 4], EPSILON);
+        assertEquals((float) -Math.cos(rot) * inner, lines[step * 4 + 1], EPSILON);
+        assertEquals((float) Math.sin(rot) * outer, lines[step * 4 + 2], EPSILON);
+        assertEquals((float) -Math.cos(rot) * outer, lines[step * 4 + 3], EPSILON);
+    }
+
+    private static void assertPoint(float[] points, int step, float rot, float radius) {
+        assertEquals((float) Math.sin(rot) * radius, points[step * 2], EPSILON);
+        assertEquals((float) -Math.cos(rot) * radius, points[step * 2 + 1], EPSILON);
+    }
+}
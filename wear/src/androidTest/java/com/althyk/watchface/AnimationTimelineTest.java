@@ -0,0 +1,219 @@
+package com.althyk.watchface;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.althyk.watchfacecommon.MetricsRecorder;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives AnimationTimeline with fake frame times on the main thread, where its Choreographer
+ * lives. The frame callbacks it posts itself can't run before a test returns, and do nothing once
+ * the timeline has stopped.
+ */
+public class AnimationTimelineTest extends TestCase {
+    private static final long FRAME_NANOS = TimeUnit.SECONDS.toNanos(1) / 30;
+    private static final long SHORT_MS = 250;
+    private static final long LONG_MS = 990;
+
+    private AnimationTimeline mTimeline;
+    private int mFrames;
+    private boolean mStopOnFrame;
+    private int mShort;
+    private int mLong;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mTimeline = new AnimationTimeline(new AnimationTimeline.Callback() {
+                    @Override
+                    public void onAnimationFrame() {
+                        mFrames++;
+                        if (mStopOnFrame) {
+                            mTimeline.stop();
+                        }
+                    }
+                });
+                mShort = mTimeline.addTween(SHORT_MS, AnimationTimeline.EASE_OUT_QUAD);
+                mLong = mTimeline.addTween(LONG_MS, AnimationTimeline.EASE_LINEAR);
+            }
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        MetricsRecorder.setEnabled(false);
+        MetricsRecorder.reset();
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mTimeline.stop();
+            }
+        });
+        super.tearDown();
+    }
+
+    public void testOneCallbackPerFrameUntilTheLastTweenEnds() throws Exception {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                assertFalse(mTimeline.isRunning());
+                assertEquals(1f, mTimeline.getValue(mShort), 0f);
+
+                mTimeline.start();
+                assertTrue(mTimeline.isRunning());
+                assertEquals(0f, mTimeline.getValue(mShort), 0f);
+                assertEquals(0f, mTimeline.getValue(mLong), 0f);
+
+                long start = System.nanoTime();
+                int frames = 0;
+                float lastShort = 0f;
+                float lastLong = 0f;
+                while (mTimeline.isRunning()) {
+                    assertTrue("runaway timeline", frames < 1000);
+                    mTimeline.doFrame(start + frames * FRAME_NANOS);
+                    frames++;
+                    assertEquals(frames, mFrames);
+
+                    float shortValue = mTimeline.getValue(mShort);
+                    float longValue = mTimeline.getValue(mLong);
+                    assertTrue(shortValue >= lastShort && shortValue <= 1f);
+                    assertTrue(longValue >= lastLong && longValue <= 1f);
+                    // eased out, the short tween leads the linear progress of its time
+                    long elapsedNanos = (frames - 1) * FRAME_NANOS;
+                    float linear = Math.min(1f,
+                            (float) elapsedNanos / TimeUnit.MILLISECONDS.toNanos(SHORT_MS));
+                    assertTrue(shortValue >= linear);
+                    lastShort = shortValue;
+                    lastLong = longValue;
+                }
+
+                // the first frame is at 0, the last one the first at or past the long tween
+                assertEquals(framesFor(LONG_MS) + 1, frames);
+                assertEquals(1f, mTimeline.getValue(mShort), 0f);
+                assertEquals(1f, mTimeline.getValue(mLong), 0f);
+
+                // a late frame callback of the stopped timeline does nothing
+                mTimeline.doFrame(start + frames * FRAME_NANOS);
+                assertEquals(frames, mFrames);
+            }
+        });
+    }
+
+    public void testShortTweenEndsOnItsFrame() throws Exception {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mTimeline.start();
+                long start = System.nanoTime();
+                int lastFrame = (int) framesFor(SHORT_MS);
+                for (int frame = 0; frame < lastFrame; frame++) {
+                    mTimeline.doFrame(start + frame * FRAME_NANOS);
+                    assertTrue(mTimeline.getValue(mShort) < 1f);
+                }
+                mTimeline.doFrame(start + lastFrame * FRAME_NANOS);
+                assertEquals(1f, mTimeline.getValue(mShort), 0f);
+                assertTrue(mTimeline.getValue(mLong) < 1f);
+                assertTrue(mTimeline.isRunning());
+            }
+        });
+    }
+
+    public void testStopFromTheCallback() throws Exception {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mStopOnFrame = true;
+                mTimeline.start();
+                long start = System.nanoTime();
+                mTimeline.doFrame(start);
+                assertEquals(1, mFrames);
+                assertFalse(mTimeline.isRunning());
+                assertEquals(1f, mTimeline.getValue(mShort), 0f);
+                assertEquals(1f, mTimeline.getValue(mLong), 0f);
+
+                mTimeline.doFrame(start + FRAME_NANOS);
+                assertEquals(1, mFrames);
+            }
+        });
+    }
+
+    public void testRestartBeginsAtTheNextFrame() throws Exception {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                mTimeline.start();
+                long start = System.nanoTime();
+                for (int frame = 0; frame < 10; frame++) {
+                    mTimeline.doFrame(start + frame * FRAME_NANOS);
+                }
+                assertTrue(mTimeline.getValue(mLong) > 0f);
+
+                mTimeline.start();
+                assertEquals(0f, mTimeline.getValue(mLong), 0f);
+                mTimeline.doFrame(start + 10 * FRAME_NANOS);
+                assertEquals(0f, mTimeline.getValue(mLong), 0f);
+                mTimeline.doFrame(start + 11 * FRAME_NANOS);
+                assertEquals((float) FRAME_NANOS / TimeUnit.MILLISECONDS.toNanos(LONG_MS),
+                        mTimeline.getValue(mLong), 1e-6f);
+            }
+        });
+    }
+
+    public void testCountsFramesAndDroppedFrames() throws Exception {
+        runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                MetricsRecorder.reset();
+                MetricsRecorder.setEnabled(true);
+                mTimeline.start();
+                long start = System.nanoTime();
+                mTimeline.doFrame(start);
+                mTimeline.doFrame(start + FRAME_NANOS);
+                mTimeline.doFrame(start + 4 * FRAME_NANOS); // 2 frames missed
+                mTimeline.doFrame(start + 5 * FRAME_NANOS);
+                MetricsRecorder.setEnabled(false);
+
+                assertEquals(4, mFrames);
+                assertEquals(4, MetricsRecorder.get(MetricsRecorder.COUNTER_ANIMATION_FRAMES));
+                assertEquals(2, MetricsRecorder.get(MetricsRecorder.COUNTER_DROPPED_FRAMES));
+                // both tweens run in every one of those frames
+                assertEquals(8,
+                        MetricsRecorder.get(MetricsRecorder.COUNTER_ANIMATION_TWEEN_STEPS));
+            }
+        });
+    }
+
+    /** Returns the number of frame intervals until a tween of durationMs is done. */
+    private static long framesFor(long durationMs) {
+        long durationNanos = TimeUnit.MILLISECONDS.toNanos(durationMs);
+        return (durationNanos + FRAME_NANOS - 1) / FRAME_NANOS;
+    }
+
+    private static void runOnMainSync(final Runnable runnable) throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Throwable[] error = new Throwable[1];
+        new Handler(Looper.getMainLooper()).post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runnable.run();
+                } catch (Throwable t) {
+                    error[0] = t;
+                }
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        if (error[0] != null) {
+            throw new AssertionError(error[0]);
+        }
+    }
+}
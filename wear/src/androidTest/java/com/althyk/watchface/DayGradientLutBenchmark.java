@@ -0,0 +1,114 @@
+package com.althyk.watchface;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+/**
+ * Times the two background colours of a digital frame, interpolated as the original face did
+ * against looked up in DayGradientLut, and the two half fills, clipRect() and drawColor() against
+ * drawRect(). Results are logged as ns per frame under the tag "Benchmark".
+ */
+public class DayGradientLutBenchmark extends TestCase {
+    private static final String TAG = "Benchmark";
+
+    private static final int WARMUP = 20000;
+    private static final int ITERATIONS = 200000;
+    private static final int FILL_WARMUP = 200;
+    private static final int FILL_ITERATIONS = 2000;
+    private static final int SIZE = 320;
+
+    public void testColors() {
+        DayGradientLut lut = new DayGradientLut(DayGradientLutTest.COLORS,
+                DayGradientLutTest.POSITIONS);
+
+        interpolate(WARMUP);
+        lookUp(lut, WARMUP);
+        long start = System.nanoTime();
+        long interpolated = interpolate(ITERATIONS);
+        long interpolateNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        long lookedUp = lookUp(lut, ITERATIONS);
+        long lookUpNanos = System.nanoTime() - start;
+
+        assertEquals(interpolated, lookedUp);
+        Log.i(TAG, "Day gradient, 2 colours/frame: interpolation "
+                + interpolateNanos / ITERATIONS + " ns/frame, DayGradientLut "
+                + lookUpNanos / ITERATIONS + " ns/frame");
+    }
+
+    public void testFills() {
+        Canvas canvas = new Canvas(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+        float centerY = SIZE / 2f;
+        RectF ltRect = new RectF(0, 0, SIZE, centerY);
+        RectF etRect = new RectF(0, centerY, SIZE, SIZE);
+        Paint ltPaint = new Paint();
+        Paint etPaint = new Paint();
+
+        clipFills(canvas, centerY, FILL_WARMUP);
+        rectFills(canvas, ltRect, etRect, ltPaint, etPaint, FILL_WARMUP);
+        long start = System.nanoTime();
+        clipFills(canvas, centerY, FILL_ITERATIONS);
+        long clipNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        rectFills(canvas, ltRect, etRect, ltPaint, etPaint, FILL_ITERATIONS);
+        long rectNanos = System.nanoTime() - start;
+
+        Log.i(TAG, "Digital backgrounds " + SIZE + "px: clipRect+drawColor "
+                + clipNanos / FILL_ITERATIONS + " ns/frame, drawRect "
+                + rectNanos / FILL_ITERATIONS + " ns/frame");
+    }
+
+    private static long interpolate(int frames) {
+        long sum = 0;
+        for (int i = 0; i < frames; i++) {
+            int minuteOfDay = i % DayGradientLut.MINUTES_IN_DAY;
+            int etMinuteOfDay = (i * 7) % DayGradientLut.MINUTES_IN_DAY;
+            sum += DayGradientLutTest.calcColor(DayGradientLutTest.COLORS,
+                    DayGradientLutTest.POSITIONS, minuteOfDay / 60, minuteOfDay % 60);
+            sum += DayGradientLutTest.calcColor(DayGradientLutTest.COLORS,
+                    DayGradientLutTest.POSITIONS, etMinuteOfDay / 60, etMinuteOfDay % 60);
+        }
+        return sum;
+    }
+
+    private static long lookUp(DayGradientLut lut, int frames) {
+        long sum = 0;
+        for (int i = 0; i < frames; i++) {
+            int minuteOfDay = i % DayGradientLut.MINUTES_IN_DAY;
+            int etMinuteOfDay = (i * 7) % DayGradientLut.MINUTES_IN_DAY;
+            sum += lut.getColor(minuteOfDay / 60, minuteOfDay % 60);
+            sum += lut.getColor(etMinuteOfDay / 60, etMinuteOfDay % 60);
+        }
+        return sum;
+    }
+
+    /** The fills of the original digital face. */
+    private static void clipFills(Canvas canvas, float centerY, int frames) {
+        for (int i = 0; i < frames; i++) {
+            canvas.save();
+            canvas.clipRect(0, 0, SIZE, centerY);
+            canvas.drawColor(DayGradientLutTest.COLORS[i % 7]);
+            canvas.restore();
+            canvas.save();
+            canvas.clipRect(0, 0, SIZE, SIZE);
+            canvas.clipRect(0, centerY, SIZE, SIZE);
+            canvas.drawColor(DayGradientLutTest.COLORS[(i + 3) % 7]);
+            canvas.restore();
+        }
+    }
+
+    private static void rectFills(Canvas canvas, RectF ltRect, RectF etRect, Paint ltPaint,
+            Paint etPaint, int frames) {
+        for (int i = 0; i < frames; i++) {
+            ltPaint.setColor(DayGradientLutTest.COLORS[i % 7]);
+            canvas.drawRect(ltRect, ltPaint);
+            etPaint.setColor(DayGradientLutTest.COLORS[(i + 3) % 7]);
+            canvas.drawRect(etRect, etPaint);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.althyk.watchface;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks DayGradientLut against the per-frame interpolation of the original digital face, and
+ * that the backgrounds filled with drawRect() have the same pixels as the clipRect() and
+ * drawColor() they replaced.
+ */
+public class DayGradientLutTest extends TestCase {
+    /** The gradient of AlthykDigitalWatchFaceService. */
+    static final int[] COLORS = {
+            Color.parseColor("#5062a6"),
+            Color.parseColor("#3386bd"),
+            Color.parseColor("#43c2e8"),
+            Color.parseColor("#ffe98c"),
+            Color.parseColor("#e09f57"),
+            Color.parseColor("#b36679"),
+            Color.parseColor("#5062a6"),
+    };
+    static final float[] POSITIONS = {0f, 5 / 24f, 7 / 24f, 0.5f, 17 / 24f, 19 / 24f, 1f};
+
+    public void testFaceGradient() {
+        assertMatchesReference(COLORS, POSITIONS);
+    }
+
+    public void testRandomGradients() {
+        Random random = new Random(42);
+        for (int n = 0; n < 200; n++) {
+            int count = 2 + random.nextInt(8);
+            int[] colors = new int[count];
+            float[] positions = new float[count];
+            for (int i = 0; i < count; i++) {
+                colors[i] = Color.rgb(random.nextInt(256), random.nextInt(256),
+                        random.nextInt(256));
+                positions[i] = random.nextFloat();
+            }
+            Arrays.sort(positions);
+            positions[0] = 0f;
+            positions[count - 1] = 1f;
+            assertMatchesReference(colors, positions);
+        }
+    }
+
+    public void testBackgroundPixels() {
+        int[][] sizes = {{320, 320, 0}, {320, 320, 57}, {280, 280, 0}, {280, 280, 33},
+                {281, 281, 0}, {320, 290, 101}};
+        Paint paint = new Paint();
+        RectF rect = new RectF();
+        for (int[] size : sizes) {
+            int width = size[0];
+            int height = size[1];
+            int cardHeight = size[2];
+            float centerY = (height - cardHeight) / 2f;
+            int ltColor = COLORS[1];
+            int etColor = COLORS[4];
+
+            Bitmap clipped = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(clipped);
+            canvas.save();
+            canvas.clipRect(0, 0, width, centerY);
+            canvas.drawColor(ltColor);
+            canvas.restore();
+            canvas.save();
+            canvas.clipRect(0, 0, width, height);
+            canvas.clipRect(0, centerY, width, height);
+            canvas.drawColor(etColor);
+            canvas.restore();
+
+            Bitmap filled = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            canvas = new Canvas(filled);
+            rect.set(0, 0, width, centerY);
+            paint.setColor(ltColor);
+            canvas.drawRect(rect, paint);
+            rect.set(0, centerY, width, height);
+            paint.setColor(etColor);
+            canvas.drawRect(rect, paint);
+
+            assertTrue(width + "x" + height + ", card " + cardHeight, filled.sameAs(clipped));
+        }
+    }
+
+    private static void assertMatchesReference(int[] colors, float[] positions) {
+        DayGradientLut lut = new DayGradientLut(colors, positions);
+        for (int hour = 0; hour < 24; hour++) {
+            for (int minute = 0; minute < 60; minute++) {
+                int expected = calcColor(colors, positions, hour, minute);
+                int actual = lut.getColor(hour, minute);
+                if (expected != actual) {
+                    fail(String.format("%02d:%02d expected %08x but was %08x", hour, minute,
+                            expected, actual));
+                }
+            }
+        }
+    }
+
+    /** calcColor() of the original digital face. */
+    static int calcColor(int[] colors, float[] positions, int hour, int minute) {
+        float value = (hour + minute / 60f) / 24f;
+        int red = 255, green = 255, blue = 255;
+        for (int i = 0; i < positions.length - 1; i++) {
+            if (positions[i] <= value && value < positions[i + 1]) {
+                float d = positions[i + 1] - positions[i];
+                float a = (value - positions[i]) / d;
+                float b = (positions[i + 1] - value) / d;
+                red = Math.round(Color.red(colors[i]) * b + Color.red(colors[i + 1]) * a);
+                green = Math.round(Color.green(colors[i]) * b + Color.green(colors[i + 1]) * a);
+                blue = Math.round(Color.blue(colors[i]) * b + Color.blue(colors[i + 1]) * a);
+                break;
+            }
+        }
+        return Color.rgb(red, green, blue);
+    }
+}
@@ -0,0 +1,144 @@
+package com.althyk.watchface;
+
+import android.os.AsyncTask;
+import android.test.AndroidTestCase;
+import android.util.AtomicFile;
+
+import com.althyk.watchfacecommon.ForecastCodec;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves and loads ForecastSnapshot through its file: a round trip, snapshots of another version
+ * or cut short, which are ignored, and an unchanged save, which writes nothing.
+ */
+public class ForecastSnapshotTest extends AndroidTestCase {
+    private static final String FILE_NAME = "forecast_snapshot"; // as ForecastSnapshot.FILE_NAME
+    private static final long TIMEOUT_MS = 5000;
+    private static final int AREA = 7;
+    private static final int BASE_SLOT = 123456;
+
+    private AtomicFile mFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mFile = new AtomicFile(new File(getContext().getFilesDir(), FILE_NAME));
+        mFile.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        awaitWrites();
+        mFile.delete();
+        super.tearDown();
+    }
+
+    public void testRoundTrip() throws Exception {
+        byte[] packed = forecast();
+        new ForecastSnapshot(getContext()).save(AREA, packed);
+        awaitWrites();
+
+        ForecastSnapshot snapshot = new ForecastSnapshot(getContext());
+        assertTrue(snapshot.load());
+        assertEquals(AREA, snapshot.getArea());
+        assertTrue(Arrays.equals(packed, snapshot.getPacked()));
+        assertEquals(BASE_SLOT, ForecastCodec.getBaseSlot(snapshot.getPacked()));
+    }
+
+    public void testNoFile() {
+        assertFalse(new ForecastSnapshot(getContext()).load());
+    }
+
+    public void testOtherVersionIsIgnored() throws Exception {
+        new ForecastSnapshot(getContext()).save(AREA, forecast());
+        awaitWrites();
+        byte[] data = mFile.readFully();
+        data[0] = ForecastSnapshot.VERSION + 1;
+        write(data);
+
+        assertFalse(new ForecastSnapshot(getContext()).load());
+    }
+
+    public void testTruncatedFileIsIgnored() throws Exception {
+        new ForecastSnapshot(getContext()).save(AREA, forecast());
+        awaitWrites();
+        byte[] data = mFile.readFully();
+
+        // inside the forecast, inside its header and inside the snapshot header
+        for (int length : new int[] {data.length - 1, 5, 1, 0}) {
+            write(Arrays.copyOf(data, length));
+            assertFalse("length " + length, new ForecastSnapshot(getContext()).load());
+        }
+    }
+
+    public void testCorruptForecastIsIgnored() throws Exception {
+        new ForecastSnapshot(getContext()).save(AREA, forecast());
+        awaitWrites();
+        byte[] data = mFile.readFully();
+        data[2] = ForecastCodec.VERSION + 1; // the ForecastCodec version byte
+        write(data);
+
+        assertFalse(new ForecastSnapshot(getContext()).load());
+    }
+
+    public void testUnchangedSaveSkipsTheWrite() throws Exception {
+        ForecastSnapshot snapshot = new ForecastSnapshot(getContext());
+        snapshot.save(AREA, forecast());
+        awaitWrites();
+        assertTrue(mFile.getBaseFile().exists());
+
+        // an equal forecast in a new array: still no write, so the deleted file stays deleted
+        mFile.delete();
+        snapshot.save(AREA, forecast());
+        awaitWrites();
+        assertFalse(mFile.getBaseFile().exists());
+
+        // a changed area is written
+        snapshot.save(AREA + 1, forecast());
+        awaitWrites();
+        ForecastSnapshot loaded = new ForecastSnapshot(getContext());
+        assertTrue(loaded.load());
+        assertEquals(AREA + 1, loaded.getArea());
+    }
+
+    public void testNoForecastSavesAnEmptyOne() throws Exception {
+        new ForecastSnapshot(getContext()).save(AREA, null);
+        awaitWrites();
+
+        ForecastSnapshot snapshot = new ForecastSnapshot(getContext());
+        assertTrue(snapshot.load());
+        assertEquals(AREA, snapshot.getArea());
+        assertEquals(0, ForecastCodec.getCount(snapshot.getPacked()));
+    }
+
+    private static byte[] forecast() {
+        ForecastCodec.Writer writer = new ForecastCodec.Writer(BASE_SLOT, 5);
+        for (int i = -1; i < 4; i++) {
+            writer.add(BASE_SLOT + i, AREA, 2 + i);
+        }
+        return writer.toByteArray();
+    }
+
+    private void write(byte[] data) throws Exception {
+        FileOutputStream out = mFile.startWrite();
+        out.write(data);
+        mFile.finishWrite(out);
+    }
+
+    /** Waits for the saves before it, which run on the serial executor. */
+    private static void awaitWrites() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,79 @@
+package com.althyk.watchface;
+
+import android.text.format.Time;
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Times the local time of a frame: Time.set(), which the faces used before, Calendar, and
+ * LtClock.set(). Frames are a second apart. Results are logged as ns per frame under the tag
+ * "Benchmark".
+ */
+public class LtClockBenchmark extends TestCase {
+    private static final String TAG = "Benchmark";
+
+    private static final long START_MS = 1420070400000L; // 2015-01-01 UTC
+    private static final int WARMUP = 20000;
+    private static final int ITERATIONS = 200000;
+
+    public void testSet() {
+        TimeZone zone = TimeZone.getTimeZone("America/New_York");
+
+        Time time = new Time(zone.getID());
+        time(time, WARMUP);
+        long start = System.nanoTime();
+        long timeResult = time(time, ITERATIONS);
+        long timeNanos = System.nanoTime() - start;
+
+        Calendar calendar = Calendar.getInstance(zone);
+        calendar(calendar, WARMUP);
+        start = System.nanoTime();
+        long calendarResult = calendar(calendar, ITERATIONS);
+        long calendarNanos = System.nanoTime() - start;
+
+        LtClock clock = new LtClock();
+        clock.setTimeZone(zone);
+        clock(clock, WARMUP);
+        start = System.nanoTime();
+        long clockResult = clock(clock, ITERATIONS);
+        long clockNanos = System.nanoTime() - start;
+
+        assertEquals(calendarResult, timeResult);
+        assertEquals(calendarResult, clockResult);
+        Log.i(TAG, "Local time of a frame: Time.set " + timeNanos / ITERATIONS
+                + " ns/op, Calendar " + calendarNanos / ITERATIONS + " ns/op, LtClock.set "
+                + clockNanos / ITERATIONS + " ns/op");
+    }
+
+    private static long time(Time time, int frames) {
+        long sum = 0;
+        for (int i = 0; i < frames; i++) {
+            time.set(START_MS + i * 1000L);
+            sum += time.hour + time.minute + time.second;
+        }
+        return sum;
+    }
+
+    private static long calendar(Calendar calendar, int frames) {
+        long sum = 0;
+        for (int i = 0; i < frames; i++) {
+            calendar.setTimeInMillis(START_MS + i * 1000L);
+            sum += calendar.get(Calendar.HOUR_OF_DAY) + calendar.get(Calendar.MINUTE)
+                    + calendar.get(Calendar.SECOND);
+        }
+        return sum;
+    }
+
+    private static long clock(LtClock clock, int frames) {
+        long sum = 0;
+        for (int i = 0; i < frames; i++) {
+            clock.set(START_MS + i * 1000L);
+            sum += clock.hour + clock.minute + clock.second;
+        }
+        return sum;
+    }
+}
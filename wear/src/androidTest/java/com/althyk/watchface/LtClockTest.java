@@ -0,0 +1,123 @@
+package com.althyk.watchface;
+
+import junit.framework.TestCase;
+
+import java.util.Calendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Checks LtClock against Calendar in zones with DST, half-hour DST (Lord Howe), odd offsets
+ * (Chatham, Kathmandu) and none (Kolkata), at random instants and around every offset
+ * transition from 2015 to 2030.
+ */
+public class LtClockTest extends TestCase {
+    private static final String[] ZONES = {
+            "UTC", "America/New_York", "Europe/London", "Australia/Lord_Howe", "Pacific/Chatham",
+            "America/Sao_Paulo", "Asia/Kolkata", "Asia/Kathmandu",
+    };
+    private static final long FROM_MS = 1420070400000L; // 2015-01-01 UTC
+    private static final long TO_MS = 1893456000000L;   // 2030-01-01 UTC
+    private static final long MINUTE_IN_MS = 60 * 1000;
+    private static final long HOUR_IN_MS = 60 * MINUTE_IN_MS;
+
+    public void testRandomInstants() {
+        Random random = new Random(42);
+        for (String id : ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            Calendar calendar = Calendar.getInstance(zone);
+            LtClock clock = new LtClock();
+            clock.setTimeZone(zone);
+            for (int i = 0; i < 20000; i++) {
+                long millis = FROM_MS + (long) (random.nextDouble() * (TO_MS - FROM_MS));
+                assertSameTime(id, calendar, clock, millis);
+            }
+        }
+    }
+
+    public void testAroundTransitions() {
+        for (String id : ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            Calendar calendar = Calendar.getInstance(zone);
+            LtClock clock = new LtClock();
+            clock.setTimeZone(zone);
+            int transitions = 0;
+            for (long transition = nextTransition(zone, FROM_MS); transition < TO_MS;
+                    transition = nextTransition(zone, transition)) {
+                transitions++;
+                // frames a second apart, as the interactive faces draw them
+                for (long millis = transition - 2 * MINUTE_IN_MS;
+                        millis <= transition + 2 * MINUTE_IN_MS; millis += 1000) {
+                    assertSameTime(id, calendar, clock, millis);
+                }
+                assertSameTime(id, calendar, clock, transition - 1);
+                assertSameTime(id, calendar, clock, transition);
+
+                // found ahead of time, when it is less than the search range away
+                clock.set(transition - HOUR_IN_MS);
+                assertEquals(id, transition, clock.getNextTransition());
+            }
+            if (zone.useDaylightTime()) {
+                assertTrue(id, transitions > 0);
+            }
+        }
+    }
+
+    public void testBeforeEpoch() {
+        TimeZone zone = TimeZone.getTimeZone("UTC");
+        LtClock clock = new LtClock();
+        clock.setTimeZone(zone);
+        clock.set(-1);
+        assertEquals(23, clock.hour);
+        assertEquals(59, clock.minute);
+        assertEquals(59, clock.second);
+        assertSameTime("UTC", Calendar.getInstance(zone), clock, -86400000L * 365 - 12345);
+    }
+
+    public void testSetTimeZone() {
+        long millis = 1435752000000L; // 2015-07-01 12:00 UTC
+        LtClock clock = new LtClock();
+        clock.setTimeZone(TimeZone.getTimeZone("America/New_York"));
+        assertEquals(8, clock.set(millis).hour);
+        clock.setTimeZone(TimeZone.getTimeZone("Asia/Kolkata"));
+        assertEquals(17, clock.set(millis).hour);
+        assertEquals(30, clock.minute);
+
+        clock.setTimeZone(null);
+        Calendar calendar = Calendar.getInstance(TimeZone.getDefault());
+        assertSameTime("default", calendar, clock, millis);
+    }
+
+    /** Returns the first instant after millis with another offset, searched hour by hour. */
+    private static long nextTransition(TimeZone zone, long millis) {
+        int offset = zone.getOffset(millis);
+        long low = millis;
+        long high = millis + HOUR_IN_MS;
+        while (zone.getOffset(high) == offset) {
+            if (high >= TO_MS) {
+                return Long.MAX_VALUE;
+            }
+            low = high;
+            high += HOUR_IN_MS;
+        }
+        while (high - low > 1) {
+            long mid = low + (high - low) / 2;
+            if (zone.getOffset(mid) == offset) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return high;
+    }
+
+    private static void assertSameTime(String id, Calendar calendar, LtClock clock,
+            long millis) {
+        clock.set(millis);
+        calendar.setTimeInMillis(millis);
+        String message = id + " at " + millis;
+        assertEquals(message, calendar.get(Calendar.HOUR_OF_DAY), clock.hour);
+        assertEquals(message, calendar.get(Calendar.MINUTE), clock.minute);
+        assertEquals(message, calendar.get(Calendar.SECOND), clock.second);
+    }
+}
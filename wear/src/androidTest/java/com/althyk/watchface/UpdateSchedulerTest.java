@@ -0,0 +1,145 @@
+package com.althyk.watchface;
+
+import android.util.Log;
+
+import com.althyk.watchfacecommon.ETime;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Runs the update loop of the engines on a fake clock: each wakeup asks UpdateScheduler for the
+ * delay and the clock jumps by it, plus the lateness of the handler if any. The changes the face
+ * must draw are found independently of UpdateScheduler, by searching for the first instant whose
+ * visible fields differ. The fixed-rate polling the faces used before is replayed for comparison
+ * and both are logged under the tag "Benchmark".
+ */
+public class UpdateSchedulerTest extends TestCase {
+    private static final String TAG = "Benchmark";
+
+    private static final long START_MS = 1420070400000L; // 2015-01-01 UTC
+    private static final long DURATION_MS = 6 * 60 * 60 * 1000L;
+    private static final long MAX_LATENESS_MS = 100;
+
+    private static final String[] POLICY_NAMES = {
+            "digital interactive", "digital ambient", "analog interactive",
+    };
+
+    private final Random mRandom = new Random(42);
+
+    public void testWakesExactlyAtEveryChange() {
+        for (int policy = 0; policy < POLICY_NAMES.length; policy++) {
+            UpdateScheduler scheduler = new UpdateScheduler();
+            long now = START_MS + mRandom.nextInt(1000000);
+            long end = now + DURATION_MS;
+            while (now < end) {
+                long next = now + scheduler.scheduleDelay(policy, now);
+                assertEquals(POLICY_NAMES[policy] + " at " + now, firstChange(policy, now), next);
+                now = next;
+            }
+        }
+    }
+
+    public void testLateWakeupsDoNotDrift() {
+        for (int policy = 0; policy < POLICY_NAMES.length; policy++) {
+            UpdateScheduler scheduler = new UpdateScheduler();
+            long now = START_MS + mRandom.nextInt(1000000);
+            long end = now + DURATION_MS;
+            while (now < end) {
+                long change = firstChange(policy, now);
+                long next = now + scheduler.scheduleDelay(policy, now)
+                        + (long) (mRandom.nextDouble() * MAX_LATENESS_MS);
+                // a late wakeup draws the change late, but the schedule doesn't drift
+                assertTrue(next >= change);
+                assertTrue(next - change <= MAX_LATENESS_MS);
+                now = next;
+            }
+        }
+    }
+
+    public void testCompareWithFixedRatePolling() {
+        for (int policy = 0; policy < POLICY_NAMES.length; policy++) {
+            long[] polled = replay(policy, false);
+            long[] scheduled = replay(policy, true);
+            assertEquals(0, scheduled[1]);
+            Log.i(TAG, "UpdateScheduler " + POLICY_NAMES[policy] + " per " + DURATION_MS / 60000
+                    + " min: polling " + polled[0] + " wakeups, " + polled[1] + " ms stale; "
+                    + "scheduled " + scheduled[0] + " wakeups, " + scheduled[1] + " ms stale");
+        }
+    }
+
+    /**
+     * Replays DURATION_MS of wakeups and returns {wakeups, stale ms}, the stale time being the sum
+     * over every change of the time until the face woke up to draw it.
+     */
+    private long[] replay(int policy, boolean scheduled) {
+        UpdateScheduler scheduler = new UpdateScheduler();
+        long now = START_MS;
+        long end = START_MS + DURATION_MS;
+        long wakeups = 0;
+        long staleMs = 0;
+        long change = firstChange(policy, now);
+        while (now < end) {
+            long next = now + (scheduled
+                    ? scheduler.scheduleDelay(policy, now) : pollingDelay(policy, now));
+            wakeups++;
+            while (change <= next) {
+                staleMs += next - change;
+                change = firstChange(policy, change);
+            }
+            now = next;
+        }
+        if (scheduled) {
+            assertEquals(wakeups, scheduler.getWakeupCount());
+        }
+        return new long[] {wakeups, staleMs};
+    }
+
+    /** The fixed rates of the faces before UpdateScheduler. */
+    private static long pollingDelay(int policy, long nowMs) {
+        switch (policy) {
+            case UpdateScheduler.DIGITAL_INTERACTIVE:
+                return 2917 - ((nowMs % 8750) % 2917);
+            case UpdateScheduler.DIGITAL_AMBIENT:
+                return 8750 * 20 - nowMs % (8750 * 20);
+            default:
+                return 1000 - nowMs % 1000;
+        }
+    }
+
+    /** Returns the first LT instant after ms that shows differently. */
+    private static long firstChange(int policy, long ms) {
+        long span = 1;
+        while (sameState(policy, ms, ms + span)) {
+            span *= 2;
+        }
+        long low = ms + span / 2; // same state
+        long high = ms + span;    // different state
+        while (high - low > 1) {
+            long mid = (low + high) >>> 1;
+            if (sameState(policy, ms, mid)) {
+                low = mid;
+            } else {
+                high = mid;
+            }
+        }
+        return high;
+    }
+
+    /** Whether the fields the policy draws are the same at both LT instants. */
+    private static boolean sameState(int policy, long ms1, long ms2) {
+        long et1 = ms1 * 144 / 7;
+        long et2 = ms2 * 144 / 7;
+        switch (policy) {
+            case UpdateScheduler.DIGITAL_INTERACTIVE:
+                return ms1 / 60000 == ms2 / 60000
+                        && et1 / ETime.MINUTE_IN_MILLIS == et2 / ETime.MINUTE_IN_MILLIS;
+            case UpdateScheduler.DIGITAL_AMBIENT:
+                return et1 / ETime.HOUR_IN_MILLIS == et2 / ETime.HOUR_IN_MILLIS;
+            default:
+                return ms1 / 1000 == ms2 / 1000
+                        && et1 / ETime.HOUR_IN_MILLIS == et2 / ETime.HOUR_IN_MILLIS;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.althyk.watchface;
+
+import android.os.Debug;
+import android.support.wearable.view.WearableListView;
+import android.test.ActivityInstrumentationTestCase2;
+import android.util.Log;
+
+/**
+ * Binds the area items of WearableConfigActivity through its adapter on the main thread, and
+ * logs the time and allocations of a bind under the tag "Benchmark": rebinding the position an
+ * item already shows, as after notifyDataSetChanged(), and binding a new position, as when an
+ * item is recycled while scrolling. Only the rebind must not allocate; a new position allocates
+ * in setText(), which builds a new text layout, and in setImageResource().
+ */
+public class WearableConfigActivityBenchmark
+        extends ActivityInstrumentationTestCase2<WearableConfigActivity> {
+    private static final String TAG = "Benchmark";
+
+    private static final int HOLDERS = 4; // about what is on screen and about to scroll in
+    private static final int ROUNDS = 200;
+
+    public WearableConfigActivityBenchmark() {
+        super(WearableConfigActivity.class);
+    }
+
+    public void testBind() throws Exception {
+        final WearableConfigActivity activity = getActivity();
+        final long[] result = new long[6];
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                WearableListView listView =
+                        (WearableListView) activity.findViewById(R.id.weather_picker);
+                WearableListView.Adapter adapter =
+                        (WearableListView.Adapter) listView.getAdapter();
+                int count = adapter.getItemCount();
+                WearableListView.ViewHolder[] holders = new WearableListView.ViewHolder[HOLDERS];
+
+                long start = System.nanoTime();
+                for (int i = 0; i < HOLDERS; i++) {
+                    holders[i] = adapter.createViewHolder(listView, 0);
+                }
+                result[0] = (System.nanoTime() - start) / HOLDERS;
+
+                // warm-up: every holder has shown every area once
+                for (int position = 0; position < count; position++) {
+                    for (WearableListView.ViewHolder holder : holders) {
+                        adapter.bindViewHolder(holder, position);
+                    }
+                }
+                for (int i = 0; i < HOLDERS; i++) {
+                    adapter.bindViewHolder(holders[i], i);
+                }
+
+                Debug.startAllocCounting();
+                try {
+                    Debug.resetThreadAllocCount();
+                    start = System.nanoTime();
+                    for (int round = 0; round < ROUNDS; round++) {
+                        for (int i = 0; i < HOLDERS; i++) {
+                            adapter.bindViewHolder(holders[i], i);
+                        }
+                    }
+                    result[1] = System.nanoTime() - start;
+                    result[2] = Debug.getThreadAllocCount();
+
+                    Debug.resetThreadAllocCount();
+                    start = System.nanoTime();
+                    for (int round = 0; round < ROUNDS; round++) {
+                        for (int i = 0; i < HOLDERS; i++) {
+                            adapter.bindViewHolder(holders[i], (round + i) % count);
+                        }
+                    }
+                    result[3] = System.nanoTime() - start;
+                    result[4] = Debug.getThreadAllocCount();
+                } finally {
+                    Debug.stopAllocCounting();
+                }
+                result[5] = count;
+            }
+        });
+
+        int binds = ROUNDS * HOLDERS;
+        Log.i(TAG, "Area list (" + result[5] + " areas): create " + result[0] / 1000
+                + " us/item; rebind " + result[1] / binds + " ns/op, "
+                + (float) result[2] / binds + " allocs/op; new position " + result[3] / binds
+                + " ns/op, " + (float) result[4] / binds + " allocs/op");
+        assertEquals(0, result[2]);
+    }
+}
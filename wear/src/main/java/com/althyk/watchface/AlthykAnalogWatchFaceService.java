@@ -6,7 +6,6 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
@@ -18,7 +17,6 @@ import android.os.Handler;
 import android.os.Message;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
-import android.text.format.Time;
 import android.util.Log;
 import android.view.Gravity;
 import android.view.SurfaceHolder;
@@ -27,8 +25,12 @@ import android.view.WindowInsets;
 import com.althyk.watchfacecommon.DataMapUtil;
 import com.althyk.watchfacecommon.DataSyncUtil;
 import com.althyk.watchfacecommon.ETime;
+import com.althyk.watchfacecommon.EorzeaWeather;
+import com.althyk.watchfacecommon.ForecastCodec;
+import com.althyk.watchfacecommon.ForecastIndex;
 import com.althyk.watchfacecommon.MessageSender;
-import com.google.android.gms.common.ConnectionResult;
+import com.althyk.watchfacecommon.MetricsRecorder;
+import com.althyk.watchfacecommon.WearableConnection;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.wearable.DataApi;
 import com.google.android.gms.wearable.DataEvent;
@@ -38,29 +40,20 @@ import com.google.android.gms.wearable.DataMap;
 import com.google.android.gms.wearable.DataMapItem;
 import com.google.android.gms.wearable.Wearable;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Random;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
 public class AlthykAnalogWatchFaceService  extends CanvasWatchFaceService {
     private static final String TAG = "AlthykA";
 
-    /**
-     * Update rate in milliseconds for interactive mode
-     * We update once a second to advance the second hand.
-     */
-    private static final long INTERACTIVE_UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
     private static final long ANIMATION_DURATION = 500;
     private static final long ANIMATION_DURATION_FOR_NAME = 2000;
-    private static final long ANIMATION_UPDATE_RATE = TimeUnit.SECONDS.toMillis(1) / 30; // 30fps
     private static final long REQUEST_FETCH_RATE_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final int REQUEST_FETCH_MAX_BACKOFF_SHIFT = 4; // 1, 2, 4, 8, 16 min
     private static final long WEATHER_UPDATE_RATE_MS = 70 * 60 * 1000 / 3; // = 8 et hour
 
-    private static final double LT_MS_IN_RAD = 2 * Math.PI / (1000 * 60 * 60);
     private static final long ET_HOUR_IN_LT_MS = 1000 * 60 * 70 / 24; // 24 [hour in ET] = 70 [min]
-    private static final long LT_HOUR_IN_LT_MS = 1000 * 60 * 60;
-    private static final double ET_HOUR_IN_RAD = LT_MS_IN_RAD * ET_HOUR_IN_LT_MS;
 
     private static final Typeface NORMAL_TYPEFACE =
             Typeface.create(Typeface.SANS_SERIF, Typeface.NORMAL);
@@ -72,22 +65,25 @@ public class AlthykAnalogWatchFaceService  extends CanvasWatchFaceService {
     }
 
     private class Engine extends CanvasWatchFaceService.Engine implements DataApi.DataListener,
-            GoogleApiClient.ConnectionCallbacks, GoogleApiClient.OnConnectionFailedListener {
+            WearableConnection.Callback, AreaSelection.Listener {
         static final int MSG_UPDATE_TIME = 0;
-        static final int MSG_UPDATE_ANIMATION = 1;
-        static final int MSG_UPDATE_ANIMATION_FOR_NAME = 2;
-        static final int MSG_REQUEST_FETCH = 3;
+        static final int MSG_REQUEST_FETCH = 1;
 
         static final int WEATHER_ICON_SIZE = 32;
 
-        Time mTime;
+        final LtClock mClock = new LtClock();
 
         /* weather data */
         int mWeatherArea = 0;
         String[] mWeatherAreaNames;
         long mLastFetchedTime = 0;
+        int mFetchAttempts = 0;
+        long mFetchBackoffMs = 0;
+        final Random mRandom = new Random();
         boolean mGotFullData = false;
-        HashMap<String, Bitmap> mWeatherHashMap = new HashMap<>();
+        int mLocalForecastSlot = -1; // start slot of the last local fill
+        final ForecastIndex<Bitmap> mForecast = new ForecastIndex<>(ForecastIndex.DEFAULT_CAPACITY);
+        WeatherIconCache mWeatherIconCache;
 
         /* device feature */
         boolean mLowBitAmbient;
@@ -120,68 +116,74 @@ public class AlthykAnalogWatchFaceService  extends CanvasWatchFaceService {
         };
         float[] mPositions = {0f, 5 / 24f, 7 / 24f, 0.5f, 17 / 24f, 19 / 24f, 1f};
 
-        /* animation */
-        long mAnimationStart;
-        float mAnimationValue = 1f;
-        float mAnimationValueForName = 1f;
+        /* pre-allocated objects for onDraw */
+        final AnalogGeometry mGeometry = new AnalogGeometry();
+        final ETime mETime = new ETime();
+        final String[] mHourLabels = new String[24];
+        final float[] mHourLabelHalfWidths = new float[24];
+        final float[] mHourLabelHalfHeights = new float[24];
+        float[] mWeatherAreaNameWidths;
+        final Paint.FontMetrics mWeatherAreaNameFontMetrics = new Paint.FontMetrics();
+
+        /* offscreen layer with the background, ticks and ET ring */
+        Bitmap mLayerBitmap;
+        Canvas mLayerCanvas;
+        boolean mLayerDirty = true;
+        int mLayerStartStep = -1;
+        int mLayerEtHour = -1;
+        int mLayerWeatherArea = -1;
+        boolean mLayerInteractive;
+
+        /* ambient frames, rendered ahead of time in the background */
+        AmbientFrameCache mAmbientFrameCache;
+
+        /* animation: ring sweep and area name fade, run by one timeline */
+        final AnimationTimeline mAnimation = new AnimationTimeline(
+                new AnimationTimeline.Callback() {
+                    @Override
+                    public void onAnimationFrame() {
+                        if (!shouldTimerBeRunning()) {
+                            mAnimation.stop();
+                        }
+                        invalidate();
+                    }
+                });
+        final int mRingSweepTween =
+                mAnimation.addTween(ANIMATION_DURATION, AnimationTimeline.EASE_OUT_QUAD);
+        final int mAreaNameTween =
+                mAnimation.addTween(ANIMATION_DURATION_FOR_NAME, AnimationTimeline.EASE_LINEAR);
+
+        final UpdateScheduler mUpdateScheduler = new UpdateScheduler();
 
-        /** Handler to update the time once a second in interactive mode. */
+        /**
+         * Handler to update the time in interactive mode. The minute hand moves once a second,
+         * and the ring once an ET hour.
+         */
         final Handler mUpdateTimeHandler = new Handler() {
             @Override
             public void handleMessage(Message message) {
                 switch (message.what) {
                     case MSG_UPDATE_TIME:
-                        invalidate();
-                        if (shouldTimerBeRunning()) {
-                            long timeMs = System.currentTimeMillis();
-                            long delayMs = INTERACTIVE_UPDATE_RATE_MS
-                                    - (timeMs % INTERACTIVE_UPDATE_RATE_MS);
-                            mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
-                        }
-                        break;
-                    case MSG_UPDATE_ANIMATION:
-                        invalidate();
-                        if (shouldTimerBeRunning()) {
-                            long diffMs = System.currentTimeMillis() - mAnimationStart;
-                            if (diffMs < ANIMATION_DURATION) {
-                                long delayMs = ANIMATION_UPDATE_RATE -
-                                        diffMs % ANIMATION_UPDATE_RATE;
-                                float t = (float) diffMs / ANIMATION_DURATION;
-                                mAnimationValue = t * (2f -  t);
-                                mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_ANIMATION, delayMs);
-                            } else {
-                                mAnimationValue = 1f;
-                            }
-                        } else {
-                            mAnimationValue = 1f;
+                        MetricsRecorder.increment(MetricsRecorder.COUNTER_MSG_UPDATE_TIME);
+                        updateLocalForecast(false);
+                        if (!mAnimation.isRunning()) {
+                            invalidate(); // otherwise the next animation frame draws the time
                         }
-                        break;
-                    case MSG_UPDATE_ANIMATION_FOR_NAME:
-                        invalidate();
                         if (shouldTimerBeRunning()) {
-                            long diffMs = System.currentTimeMillis() - mAnimationStart;
-                            if (diffMs < ANIMATION_DURATION_FOR_NAME) {
-                                long delayMs = ANIMATION_UPDATE_RATE -
-                                        diffMs % ANIMATION_UPDATE_RATE;
-                                float t = (float) diffMs / ANIMATION_DURATION_FOR_NAME;
-                                mAnimationValueForName = t;
-                                mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_ANIMATION_FOR_NAME, delayMs);
-                            } else {
-                                mAnimationValueForName = 1f;
-                            }
-                        } else {
-                            mAnimationValueForName = 1f;
+                            long delayMs = mUpdateScheduler.scheduleDelay(
+                                    UpdateScheduler.ANALOG_INTERACTIVE, System.currentTimeMillis());
+                            mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
                         }
                         break;
                     case MSG_REQUEST_FETCH:
+                        MetricsRecorder.increment(MetricsRecorder.COUNTER_MSG_REQUEST_FETCH);
                         mLastFetchedTime = System.currentTimeMillis();
-                        MessageSender.sendMessage(mGoogleApiClient,
-                                DataSyncUtil.PATH_REQUEST_FETCH, null);
-                        if (shouldTimerBeRunning()) {
-                            long timeMs = System.currentTimeMillis();
-                            long delayMs = REQUEST_FETCH_RATE_MS - (timeMs % REQUEST_FETCH_RATE_MS);
-                            mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_REQUEST_FETCH, delayMs);
-                        }
+                        mGotFullData = false;
+                        mFetchBackoffMs = nextFetchBackoff();
+                        // at most one request waits for the connection
+                        mConnection.cancel(mSendFetchRequest);
+                        mConnection.whenConnected(mSendFetchRequest);
+                        updateFetchRequest();
                         break;
                 }
             }
@@ -191,18 +193,42 @@ public class AlthykAnalogWatchFaceService  extends CanvasWatchFaceService {
         final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mTime.clear(intent.getStringExtra("time-zone"));
-                mTime.setToNow();
+                String zoneId = intent.getStringExtra("time-zone");
+                mClock.setTimeZone(zoneId != null ? TimeZone.getTimeZone(zoneId) : null);
             }
         };
         boolean mRegisteredTimeZoneReceiver = false;
 
-        /* google api client */
-        GoogleApiClient mGoogleApiClient = new GoogleApiClient.Builder(AlthykAnalogWatchFaceService.this)
-                .addConnectionCallbacks(this)
-                .addOnConnectionFailedListener(this)
-                .addApi(Wearable.API)
-                .build();
+        // last value passed to onVisibilityChanged()
+        boolean mVisible = false;
+
+        /* shared google api client, held while visible */
+        final WearableConnection mConnection =
+                WearableConnection.getInstance(AlthykAnalogWatchFaceService.this);
+        final GoogleApiClient mGoogleApiClient = mConnection.getClient();
+        boolean mConnectionAcquired = false;
+
+        /* sends a fetch request for the area current when the connection is up */
+        final WearableConnection.Callback mSendFetchRequest = new WearableConnection.Callback() {
+            @Override
+            public void onConnected(GoogleApiClient client) {
+                DataMap request = new DataMap();
+                DataSyncUtil.putSupportedWireFormat(request);
+                DataSyncUtil.putSubscribedArea(request, mWeatherArea);
+                MessageSender.sendMessage(client, DataSyncUtil.PATH_REQUEST_FETCH, request);
+            }
+        };
+
+        /* area selected in this process, applied before it is written to the DataItem */
+        final AreaSelection mAreaSelection =
+                AreaSelection.getInstance(AlthykAnalogWatchFaceService.this);
+        boolean mAreaApplied = false;
+        boolean mAreaKnown = false; // from the snapshot or the DataItem
+
+        /* last forecast, for a complete first frame */
+        ForecastSnapshot mSnapshot;
+        long mFirstFrameStartNanos = 0; // 0 once measured
+        boolean mLayerComplete = false;
 
         @Override
         public void onCreate(SurfaceHolder holder) {
@@ -298,17 +324,37 @@ public class AlthykAnalogWatchFaceService  extends CanvasWatchFaceService {
 
             mWeatherAreaNames = getResources().getStringArray(R.array.area_array);
 
-            /* allocate an object to hold the time*/
-            mTime = new Time();
+            mWeatherIconCache = new WeatherIconCache(getResources(), getPackageName(),
+                    WeatherIconCache.DEFAULT_MAX_BYTES);
+            mWeatherIconCache.prewarm(WEATHER_ICON_SIZE, false);
+
+            updateTextMetrics();
+            mAmbientFrameCache = new AmbientFrameCache(mTickPaint, mETTickPaint,
+                    mAccentETTickPaint, mTextPaint, mHourLabels, mHourLabelHalfWidths,
+                    mHourLabelHalfHeights);
+            mAreaSelection.addListener(this);
+
+            mFirstFrameStartNanos = System.nanoTime();
+            mSnapshot = new ForecastSnapshot(AlthykAnalogWatchFaceService.this);
+            loadSnapshot();
         }
 
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
-            mUpdateTimeHandler.removeMessages(MSG_UPDATE_ANIMATION);
-            mUpdateTimeHandler.removeMessages(MSG_UPDATE_ANIMATION_FOR_NAME);
             mUpdateTimeHandler.removeMessages(MSG_REQUEST_FETCH);
+            mConnection.cancel(mSendFetchRequest);
+            mAnimation.stop();
+            mAreaSelection.removeListener(this);
             unregisterReceiver();
+            releaseConnection();
+            if (mLayerBitmap != null) {
+                mLayerBitmap.recycle();
+                mLayerBitmap = null;
+            }
+            mForecast.clear();
+            mWeatherIconCache.evictAll();
+            mAmbientFrameCache.quit();
             super.onDestroy();
         }
 
@@ -327,6 +373,7 @@ public class AlthykAnalogWatchFaceService  extends CanvasWatchFaceService {
             super.onPropertiesChanged(properties);
             mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
             mBurnInProtection = properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false);
+            mLayerDirty = true;
         }
 
         @Override
@@ -357,7 +404,8 @@ public class AlthykAnalogWatchFaceService  extends CanvasWatchFaceService {
                 mWeatherAreaNamePaint.setAntiAlias(antiAlias);
             }
 
-            invalidate();
+            updateLocalForecast(false);
+            invalidateLayer();
 
             // Whether the timer should be running depends on whether we're in ambient mode (as well
             // as whether we're visible), so we may need to start or stop the timer.
@@ -366,137 +414,112 @@ public class AlthykAnalogWatchFaceService  extends CanvasWatchFaceService {
             updateFetchRequest();
         }
 
+        @Override
+        public void invalidate() {
+            MetricsRecorder.increment(MetricsRecorder.COUNTER_INVALIDATES);
+            super.invalidate();
+        }
+
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
+            long drawStart = MetricsRecorder.isEnabled() ? System.nanoTime() : 0;
+            int allocToken = MetricsRecorder.beginAllocCount();
+            drawFace(canvas, bounds, System.currentTimeMillis());
+            MetricsRecorder.endAllocCount(allocToken);
+            if (mFirstFrameStartNanos != 0 && mLayerComplete && shouldTimerBeRunning()) {
+                // time to the first frame with the area and the whole ring
+                MetricsRecorder.increment(MetricsRecorder.COUNTER_FIRST_FRAMES);
+                MetricsRecorder.add(MetricsRecorder.COUNTER_FIRST_FRAME_NANOS,
+                        System.nanoTime() - mFirstFrameStartNanos);
+                mFirstFrameStartNanos = 0;
+            }
+            if (drawStart != 0) {
+                long drawNanos = System.nanoTime() - drawStart;
+                MetricsRecorder.recordFrame(drawNanos);
+                if (isInAmbientMode()) {
+                    MetricsRecorder.increment(MetricsRecorder.COUNTER_AMBIENT_FRAMES);
+                    MetricsRecorder.add(MetricsRecorder.COUNTER_AMBIENT_DRAW_NANOS, drawNanos);
+                }
+            }
+        }
+
+        /** Draws the face at the LT instant millis. */
+        private void drawFace(Canvas canvas, Rect bounds, long millis) {
             /* update the time */
-            mTime.setToNow();
-            long millis = System.currentTimeMillis();
-            ETime etime = new ETime().setLtMillis(millis);
+            LtClock clock = mClock.set(millis);
+            ETime etime = mETime.setLtMillis(millis);
 
             int width = bounds.width();
             int height = bounds.height();
-            float centerX = bounds.exactCenterX();
-            float centerY = bounds.exactCenterY();
-
-            // draw background
-            canvas.drawRect(0, 0, width, height, mBackgroundPaint);
-
-            // Draw the ticks.
-            float innerTickRadius = centerX - 100;
-            float outerTickRadius = centerX - 90;
-            for (int tickIndex = 0; tickIndex < 12; tickIndex++) {
-                float tickRot = (float) (tickIndex * Math.PI * 2 / 12);
-                float innerX = (float) Math.sin(tickRot) * innerTickRadius;
-                float innerY = (float) -Math.cos(tickRot) * innerTickRadius;
-                float outerX = (float) Math.sin(tickRot) * outerTickRadius;
-                float outerY = (float) -Math.cos(tickRot) * outerTickRadius;
-                canvas.drawLine(centerX + innerX, centerY + innerY,
-                        centerX + outerX, centerY + outerY, mTickPaint);
+            AnalogGeometry geometry = mGeometry;
+            if (geometry.update(bounds) || mLayerBitmap == null) {
+                createLayer(width, height);
             }
+            float centerX = geometry.centerX;
+            float centerY = geometry.centerY;
 
-            int second = mTime.second;
-            int minutes = mTime.minute;
-            int hour = mTime.hour;
-            float minRot = (minutes / 30f  + second / 1800f) * (float) Math.PI;
-            float hrRot = ((hour + (minutes / 60f)) / 6f) * (float) Math.PI;
-
-            float minLength = centerX - 40;
-            float hrLength = centerX - 115;
-
-            // draw min
-            float minX = (float) Math.sin(minRot) * minLength;
-            float minY = (float) -Math.cos(minRot) * minLength;
-            canvas.drawLine(centerX, centerY, centerX + minX, centerY + minY, mMinutePaint);
-
-            // draw hour
-            float hrX = (float) Math.sin(hrRot) * hrLength;
-            float hrY = (float) -Math.cos(hrRot) * hrLength;
-            canvas.drawLine(centerX, centerY, centerX + hrX, centerY + hrY, mHourPaint);
-
-            // Draw the circle
             int etHour = etime.hour;
             long prevETTickMS = millis - (millis % ET_HOUR_IN_LT_MS);
-            double startRad = (prevETTickMS % LT_HOUR_IN_LT_MS) * LT_MS_IN_RAD;
-            float startDeg = (float) (startRad * 180 / Math.PI);
-            if (shouldTimerBeRunning()) {
-                if (mWeatherArea == 0) {
-                    canvas.save(Canvas.MATRIX_SAVE_FLAG);
-                    canvas.translate(centerX, centerY);
-                    canvas.rotate(startDeg - 90f - etHour * 15); // 15 = 360 / 24
-                    canvas.drawArc(-centerX + 15, -centerY + 15, centerX - 15, centerY - 15,
-                            0f, 360f, false, mCirclePaint);
-                    canvas.restore();
-                } else {
-                    ETime weatherStart = etime.generateStartET();
-                    String[] timeIds = {
-                            weatherStart.getTimeId(),
-                            new ETime().setEtMillis(weatherStart.time + ETime.HOUR_IN_MILLIS * 8).getTimeId(),
-                            new ETime().setEtMillis(weatherStart.time + ETime.HOUR_IN_MILLIS * 8 * 2).getTimeId(),
-                            new ETime().setEtMillis(weatherStart.time + ETime.HOUR_IN_MILLIS * 8 * 3).getTimeId(),
-                    };
-                    int timeIndex = 0;
-                    float etCenterTickRadius = centerX - 15;
-                    for (int etTickIndex = 0; etTickIndex < 20; etTickIndex++) {
-                        String timeId = timeIds[timeIndex];
-                        Bitmap bitmap = mWeatherHashMap.get(timeId);
-                        if (bitmap != null) {
-                            float tickRot = (float) (startRad + etTickIndex * ET_HOUR_IN_RAD);
-                            float wPosX = (float) Math.sin(tickRot + ET_HOUR_IN_RAD / 2f) * etCenterTickRadius;
-                            float wPosY = (float) -Math.cos(tickRot + ET_HOUR_IN_RAD / 2f) * etCenterTickRadius;
-                            float posX = wPosX - bitmap.getWidth() / 2f;
-                            float posY = wPosY - bitmap.getHeight() / 2f;
-                            canvas.drawBitmap(bitmap, posX + centerX, posY + centerY, mWeatherPaint);
-                        }
-
-                        int nextTickHour = (etHour + etTickIndex + 1) % 24;
-                        if (nextTickHour % 8 == 0) {
-                            timeIndex ++;
-                        }
-                    }
+            int startStep = AnalogGeometry.ringStep(prevETTickMS);
+            float startDeg = 360f * startStep / AnalogGeometry.RING_STEPS;
+            boolean interactive = shouldTimerBeRunning();
+
+            Bitmap ambientFrame = null;
+            if (isInAmbientMode()) {
+                boolean weather = mWeatherArea != 0;
+                int variant = AmbientFrameCache.variantOf(mLowBitAmbient, mBurnInProtection);
+                ambientFrame = mAmbientFrameCache.get(bounds, startStep, etHour, weather, variant);
+                if (ambientFrame == null) {
+                    MetricsRecorder.increment(MetricsRecorder.COUNTER_AMBIENT_CACHE_MISSES);
                 }
+                // the next ET hour is rendered while the watch sleeps
+                mAmbientFrameCache.prepare(bounds,
+                        (startStep + AnalogGeometry.ET_HOUR_IN_STEPS) % AnalogGeometry.RING_STEPS,
+                        (etHour + 1) % 24, weather, variant);
             }
 
-            // Draw the ET ticks.
-            float etTextRadius = centerX - 40;
-            float etInnerTickRadius = centerX - 20;
-            float etOuterTickRadius = centerX - 10;
-            if (mWeatherArea == 0) {
-                mETTickPaint.setARGB(255, 0, 0, 0);
-                mAccentETTickPaint.setARGB(255, 0, 0, 0);
+            if (ambientFrame != null) {
+                canvas.drawBitmap(ambientFrame, 0, 0, null);
             } else {
-                etInnerTickRadius = centerX - 15;
-                etOuterTickRadius = centerX - 14;
-                mETTickPaint.setARGB(255, 128, 128, 128);
-                mAccentETTickPaint.setARGB(255, 200, 200, 200);
+                // background, ticks and ET ring only change once an ET hour
+                if (mLayerDirty || startStep != mLayerStartStep || etHour != mLayerEtHour
+                        || mWeatherArea != mLayerWeatherArea || interactive != mLayerInteractive) {
+                    mLayerDirty = false;
+                    mLayerStartStep = startStep;
+                    mLayerEtHour = etHour;
+                    mLayerWeatherArea = mWeatherArea;
+                    mLayerInteractive = interactive;
+                    drawLayer(mLayerCanvas, width, height, etime, startStep, startDeg,
+                            interactive);
+                }
+                canvas.drawBitmap(mLayerBitmap, 0, 0, null);
             }
-            for (int etTickIndex = 0; etTickIndex < 20; etTickIndex++) {
-                float tickRot = (float) (startRad + etTickIndex * ET_HOUR_IN_RAD);
-                float innerX = (float) Math.sin(tickRot) * etInnerTickRadius;
-                float innerY = (float) -Math.cos(tickRot) * etInnerTickRadius;
-                float outerX = (float) Math.sin(tickRot) * etOuterTickRadius;
-                float outerY = (float) -Math.cos(tickRot) * etOuterTickRadius;
 
-                int tickHour = etHour + etTickIndex;
-                canvas.drawLine(centerX + innerX, centerY + innerY,
-                        centerX + outerX, centerY + outerY,
-                        tickHour % 8 != 0 ? mETTickPaint : mAccentETTickPaint);
+            int second = clock.second;
+            int minutes = clock.minute;
+            int hour = clock.hour;
+            int minStep = AnalogGeometry.minuteHandStep(minutes, second);
+            int hrStep = AnalogGeometry.hourHandStep(hour, minutes);
 
-                if (etTickIndex == 0 || tickHour % 8 == 0) {
-                    String hourText = (tickHour % 24) + "";
-                    Rect rect = new Rect();
-                    mTextPaint.getTextBounds(hourText, 0, hourText.length(), rect);
-                    float textX = (float) Math.sin(tickRot) * etTextRadius - rect.width() / 2f;
-                    float textY = (float) -Math.cos(tickRot) * etTextRadius + rect.height() / 2f;
-                    canvas.drawText(hourText, centerX + textX, centerY + textY, mTextPaint);
-                }
-            }
+            float minLength = geometry.minuteHandLength;
+            float hrLength = geometry.hourHandLength;
+
+            // draw min
+            float minX = AnalogGeometry.handSin(minStep) * minLength;
+            float minY = -AnalogGeometry.handCos(minStep) * minLength;
+            canvas.drawLine(centerX, centerY, centerX + minX, centerY + minY, mMinutePaint);
+
+            // draw hour
+            float hrX = AnalogGeometry.handSin(hrStep) * hrLength;
+            float hrY = -AnalogGeometry.handCos(hrStep) * hrLength;
+            canvas.drawLine(centerX, centerY, centerX + hrX, centerY + hrY, mHourPaint);
 
             // dimming
             if (shouldTimerBeRunning()) {
                 canvas.save(Canvas.MATRIX_SAVE_FLAG);
                 canvas.translate(centerX, centerY);
                 canvas.rotate(startDeg - 90f);
-                float sweepDegree = 360f * mAnimationValue;
+                float sweepDegree = 360f * mAnimation.getValue(mRingSweepTween);
                 canvas.drawArc(-centerX + 15, -centerY + 15, centerX - 15, centerY - 15,
                         0, sweepDegree, false, mCircleDimPaint);
                 canvas.drawArc(-centerX + 15, -centerY + 15, centerX - 15, centerY - 15,
@@ -505,23 +528,23 @@ public class AlthykAnalogWatchFaceService  extends CanvasWatchFaceService {
             }
 
             // draw area name
-            if (shouldTimerBeRunning() && mWeatherArea > 0 && mAnimationValueForName < 1f) {
+            float nameValue = mAnimation.getValue(mAreaNameTween);
+            if (shouldTimerBeRunning() && mWeatherArea > 0 && nameValue < 1f) {
                 String areaName = mWeatherAreaNames[mWeatherArea];
-                float textWidth = mWeatherAreaNamePaint.measureText(areaName);
+                float textWidth = mWeatherAreaNameWidths[mWeatherArea];
                 float posX = centerX - textWidth / 2f;
                 float posY = height * 2 / 3f;
 
-                Paint.FontMetrics fm = new Paint.FontMetrics();
-                mWeatherAreaNamePaint.getFontMetrics(fm);
+                Paint.FontMetrics fm = mWeatherAreaNameFontMetrics;
                 float margin = 5;
 
                 int alpha;
-                if (mAnimationValueForName < 0.2f) {
-                    alpha = Math.round(255 * mAnimationValueForName / 0.2f);
-                } else if (mAnimationValueForName < 0.7f) {
+                if (nameValue < 0.2f) {
+                    alpha = Math.round(255 * nameValue / 0.2f);
+                } else if (nameValue < 0.7f) {
                     alpha = 255;
                 } else {
-                    alpha = Math.round(255 * (1f - mAnimationValueForName) / 0.3f);
+                    alpha = Math.round(255 * (1f - nameValue) / 0.3f);
                 }
                 
                 mWeatherAreaNameBgPaint.setAlpha(alpha);
@@ -540,22 +563,25 @@ public class AlthykAnalogWatchFaceService  extends CanvasWatchFaceService {
         @Override
         public void onVisibilityChanged(boolean visible) {
             super.onVisibilityChanged(visible);
+            mVisible = visible;
 
             if (visible) {
-                mGoogleApiClient.connect();
+                if (mFirstFrameStartNanos == 0) {
+                    mFirstFrameStartNanos = System.nanoTime();
+                }
+                acquireConnection();
 
                 registerReceiver();
 
                 // Update time zone in case it changed while we weren't visible
-                mTime.clear(TimeZone.getDefault().getID());
-                mTime.setToNow();
+                mClock.setTimeZone(TimeZone.getDefault());
+
+                updateLocalForecast(false);
             } else {
+                mFirstFrameStartNanos = 0;
                 unregisterReceiver();
-
-                if (mGoogleApiClient != null && mGoogleApiClient.isConnected()) {
-                    Wearable.DataApi.removeListener(mGoogleApiClient, this);
-                    mGoogleApiClient.disconnect();
-                }
+                mConnection.cancel(mSendFetchRequest);
+                releaseConnection();
             }
 
             // Whether the timer should be running depends on whether we're visible (as well as
@@ -564,6 +590,27 @@ public class AlthykAnalogWatchFaceService  extends CanvasWatchFaceService {
             updateFetchRequest();
         }
 
+        private void acquireConnection() {
+            if (mConnectionAcquired) {
+                return;
+            }
+            mConnectionAcquired = true;
+            mConnection.acquire();
+            mConnection.whenConnected(this);
+        }
+
+        private void releaseConnection() {
+            if (!mConnectionAcquired) {
+                return;
+            }
+            mConnectionAcquired = false;
+            mConnection.cancel(this);
+            if (mConnection.isConnected()) {
+                Wearable.DataApi.removeListener(mGoogleApiClient, this);
+            }
+            mConnection.release();
+        }
+
         private void registerReceiver() {
             if (mRegisteredTimeZoneReceiver) {
                 return;
@@ -581,9 +628,134 @@ public class AlthykAnalogWatchFaceService  extends CanvasWatchFaceService {
             AlthykAnalogWatchFaceService.this.unregisterReceiver(mTimeZoneReceiver);
         }
 
+        private void createLayer(int width, int height) {
+            if (mLayerBitmap != null) {
+                mLayerBitmap.recycle();
+            }
+            mLayerBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mLayerCanvas = new Canvas(mLayerBitmap);
+            mLayerDirty = true;
+        }
+
+        private void invalidateLayer() {
+            mLayerDirty = true;
+            invalidate();
+        }
+
+        /**
+         * Draws the background, the LT ticks, the ET ring (colour ring or weather icons), the ET
+         * ticks and the hour labels into the offscreen layer.
+         */
+        private void drawLayer(Canvas canvas, int width, int height, ETime etime, int startStep,
+                               float startDeg, boolean interactive) {
+            AnalogGeometry geometry = mGeometry;
+            float centerX = geometry.centerX;
+            float centerY = geometry.centerY;
+            int etHour = etime.hour;
+
+            // draw background
+            canvas.drawRect(0, 0, width, height, mBackgroundPaint);
+
+            // Draw the ticks. They never move, so AmbientFrameCache leaves them out on
+            // burn-in sensitive screens; so does the ambient layer.
+            boolean burnInSafe = !interactive && mBurnInProtection;
+            if (!burnInSafe) {
+                canvas.drawLines(geometry.ltTicks, mTickPaint);
+            }
+
+            // Draw the circle
+            mLayerComplete = false;
+            if (interactive) {
+                if (mWeatherArea == 0) {
+                    canvas.save(Canvas.MATRIX_SAVE_FLAG);
+                    canvas.translate(centerX, centerY);
+                    canvas.rotate(startDeg - 90f - etHour * 15); // 15 = 360 / 24
+                    canvas.drawArc(-centerX + 15, -centerY + 15, centerX - 15, centerY - 15,
+                            0f, 360f, false, mCirclePaint);
+                    canvas.restore();
+                    mLayerComplete = mAreaKnown;
+                } else {
+                    int startSlot = etime.getTimeSlot();
+                    float[] anchors = geometry.weatherAnchors;
+                    int timeIndex = 0;
+                    int missing = 0;
+                    for (int etTickIndex = 0; etTickIndex < 20; etTickIndex++) {
+                        Bitmap bitmap = mForecast.get(startSlot + timeIndex);
+                        if (bitmap == null || bitmap.isRecycled()) {
+                            missing++;
+                        } else {
+                            int step = (startStep + etTickIndex * AnalogGeometry.ET_HOUR_IN_STEPS
+                                    + AnalogGeometry.ET_HOUR_IN_STEPS / 2) % AnalogGeometry.RING_STEPS;
+                            float posX = anchors[step * 2] - bitmap.getWidth() / 2f;
+                            float posY = anchors[step * 2 + 1] - bitmap.getHeight() / 2f;
+                            canvas.drawBitmap(bitmap, posX + centerX, posY + centerY, mWeatherPaint);
+                        }
+
+                        int nextTickHour = (etHour + etTickIndex + 1) % 24;
+                        if (nextTickHour % 8 == 0) {
+                            timeIndex ++;
+                        }
+                    }
+                    mLayerComplete = mAreaKnown && missing == 0;
+                }
+            }
+
+            // Draw the ET ticks.
+            float[] etTicks;
+            if (mWeatherArea == 0) {
+                etTicks = geometry.etTicks;
+                mETTickPaint.setARGB(255, 0, 0, 0);
+                mAccentETTickPaint.setARGB(255, 0, 0, 0);
+            } else {
+                etTicks = geometry.etWeatherTicks;
+                mETTickPaint.setARGB(255, 128, 128, 128);
+                mAccentETTickPaint.setARGB(255, 200, 200, 200);
+            }
+            float[] textAnchors = geometry.etTextAnchors;
+            for (int etTickIndex = 0; etTickIndex < 20; etTickIndex++) {
+                int step = (startStep + etTickIndex * AnalogGeometry.ET_HOUR_IN_STEPS)
+                        % AnalogGeometry.RING_STEPS;
+
+                int tickHour = etHour + etTickIndex;
+                canvas.drawLine(centerX + etTicks[step * 4], centerY + etTicks[step * 4 + 1],
+                        centerX + etTicks[step * 4 + 2], centerY + etTicks[step * 4 + 3],
+                        tickHour % 8 != 0 || burnInSafe ? mETTickPaint : mAccentETTickPaint);
+
+                if (etTickIndex == 0 || tickHour % 8 == 0) {
+                    int labelHour = tickHour % 24;
+                    float textX = textAnchors[step * 2] - mHourLabelHalfWidths[labelHour];
+                    float textY = textAnchors[step * 2 + 1] + mHourLabelHalfHeights[labelHour];
+                    canvas.drawText(mHourLabels[labelHour], centerX + textX, centerY + textY,
+                            mTextPaint);
+                }
+            }
+        }
+
+        /**
+         * Measures the ET hour labels and the area names once, so that onDraw only reads the
+         * cached values. Must be called again whenever the text paints change their size.
+         */
+        private void updateTextMetrics() {
+            Rect rect = new Rect();
+            for (int hour = 0; hour < 24; hour++) {
+                String hourText = String.valueOf(hour).intern();
+                mTextPaint.getTextBounds(hourText, 0, hourText.length(), rect);
+                mHourLabels[hour] = hourText;
+                mHourLabelHalfWidths[hour] = rect.width() / 2f;
+                mHourLabelHalfHeights[hour] = rect.height() / 2f;
+            }
+
+            mWeatherAreaNameWidths = new float[mWeatherAreaNames.length];
+            for (int i = 0; i < mWeatherAreaNames.length; i++) {
+                mWeatherAreaNameWidths[i] = mWeatherAreaNamePaint.measureText(mWeatherAreaNames[i]);
+            }
+            mWeatherAreaNamePaint.getFontMetrics(mWeatherAreaNameFontMetrics);
+        }
+
         private void updateWeather(DataMap dataMap) {
             if (dataMap == null) {
-                DataMapUtil.fetchDataMap(mGoogleApiClient, DataSyncUtil.PATH_DATA_WEATHER,
+                DataMapUtil.fetchDataMap(mGoogleApiClient,
+                        DataSyncUtil.getWeatherPath(mWeatherArea),
                         new DataMapUtil.FetchDataMapCallback() {
                             @Override
                             public void onDataMapFetched(DataMap dataMap) {
@@ -593,55 +765,177 @@ public class AlthykAnalogWatchFaceService  extends CanvasWatchFaceService {
                 return;
             };
 
-            ArrayList<DataMap> weatherList =
-                    dataMap.getDataMapArrayList(DataSyncUtil.KEY_WEATHER_LIST);
-            if (weatherList == null) {
+            byte[] packed = dataMap.getByteArray(DataSyncUtil.KEY_WEATHER_PACKED);
+            if (!ForecastCodec.isValid(packed)) {
                 return;
             }
+            long ingestStart = MetricsRecorder.isEnabled() ? System.nanoTime() : 0;
+            int count = updateWeatherFromPacked(packed);
+            if (MetricsRecorder.isEnabled()) {
+                MetricsRecorder.add(MetricsRecorder.COUNTER_WEATHER_INGEST_NANOS,
+                        System.nanoTime() - ingestStart);
+            }
 
-            if (weatherList.size() != 0) {
-                mWeatherHashMap.clear();
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "weather icon cache: " + mWeatherIconCache);
             }
 
-            for (DataMap weatherDataMap : weatherList) {
-                int weatherArea = weatherDataMap.getInt(DataSyncUtil.KEY_WEATHER_AREA);
-                if (weatherArea == mWeatherArea) {
-                    int year = weatherDataMap.getInt(DataSyncUtil.KEY_WEATHER_YEAR);
-                    int month = weatherDataMap.getInt(DataSyncUtil.KEY_WEATHER_MONTH);
-                    int day = weatherDataMap.getInt(DataSyncUtil.KEY_WEATHER_DAY);
-                    int hour = weatherDataMap.getInt(DataSyncUtil.KEY_WEATHER_HOUR);
-                    String key = ETime.getTimeId(year, month, day, hour);
+            if (count > 0) {
+                mSnapshot.save(mWeatherArea, packed);
+                updateLocalForecast(true);
+            }
 
-                    int weatherId = weatherDataMap.getInt(DataSyncUtil.KEY_WEATHER_ID);
-                    String resourceName = String.format("weather_icon_%02d", weatherId);
-                    int iconId = getResources().getIdentifier(resourceName, "drawable", "com.althyk.watchface");
-                    Bitmap bitmap = BitmapFactory.decodeResource(getResources(), iconId);
-                    bitmap = Bitmap.createScaledBitmap(bitmap, WEATHER_ICON_SIZE, WEATHER_ICON_SIZE,
-                            true);
+            mGotFullData = count == DataSyncUtil.FORECAST_WINDOWS;
+            if (mGotFullData) {
+                mFetchAttempts = 0;
+                mFetchBackoffMs = 0;
+                updateFetchRequest();
+            }
 
-                    mWeatherHashMap.put(key, bitmap);
+            invalidateLayer();
+        }
+
+        /** Reads the packed forecast in place. Returns the number of entries of the area. */
+        private int updateWeatherFromPacked(byte[] packed) {
+            int count = ForecastCodec.getCount(packed);
+            int areaCount = 0;
+            for (int i = 0; i < count; i++) {
+                if (ForecastCodec.getArea(packed, i) == mWeatherArea) {
+                    if (areaCount++ == 0) {
+                        mForecast.clear();
+                    }
+                    putWeather(ForecastCodec.getSlot(packed, i),
+                            ForecastCodec.getWeatherId(packed, i));
                 }
             }
+            return areaCount;
+        }
 
-            mGotFullData = weatherList.size() == 24 * 5;
-            if (mGotFullData) {
-                updateFetchRequest();
+        private void putWeather(int slot, int weatherId) {
+            int localWeatherId = EorzeaWeather.getWeatherId(mWeatherArea, slot);
+            if (localWeatherId != weatherId && Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Local forecast mismatch: area " + mWeatherArea + ", slot " + slot
+                        + ", phone " + weatherId + ", local " + localWeatherId);
+            }
+            Bitmap bitmap = mWeatherIconCache.get(weatherId, WEATHER_ICON_SIZE, false);
+            if (bitmap != null) {
+                mForecast.put(slot, weatherId, bitmap);
             }
+        }
 
-            invalidate();
+        /**
+         * Fills the ring from the local forecast when the weather window moved on, or always if
+         * force is set (the area or the phone's forecast changed). Runs off the draw path, so
+         * drawLayer() only reads mForecast.
+         */
+        private void updateLocalForecast(boolean force) {
+            int startSlot = ETime.getTimeSlot(System.currentTimeMillis());
+            if (!force && startSlot == mLocalForecastSlot) {
+                return;
+            }
+            mLocalForecastSlot = startSlot;
+            fillForecastLocally(startSlot);
+            invalidateLayer();
+        }
+
+        /**
+         * Fills the windows of the ring that the phone hasn't sent yet with the local forecast,
+         * so the ring is complete without a phone connection. This is only a fallback: the
+         * phone's forecast replaces it, and is still fetched until it is complete.
+         */
+        private void fillForecastLocally(int startSlot) {
+            if (mWeatherArea == 0) {
+                return; // no ring to fill
+            }
+            for (int slot = startSlot; slot < startSlot + ForecastIndex.DEFAULT_CAPACITY - 1; slot++) {
+                if (mForecast.contains(slot)) {
+                    continue;
+                }
+                int weatherId = EorzeaWeather.getWeatherId(mWeatherArea, slot);
+                Bitmap bitmap = weatherId == EorzeaWeather.NO_WEATHER
+                        ? null : mWeatherIconCache.get(weatherId, WEATHER_ICON_SIZE, false);
+                if (bitmap != null) {
+                    mForecast.put(slot, weatherId, bitmap);
+                }
+            }
         }
 
         private void updateArea(DataMap dataMap) {
             int areaId = dataMap.getInt(DataSyncUtil.KEY_WEATHER_AREA, -1);
             if (areaId != -1) {
-                mWeatherArea = areaId;
+                mAreaSelection.onCommitted(areaId);
+                // a selection that isn't committed yet wins over the DataItem
+                applyArea(mAreaSelection.getArea());
+            }
+        }
+
+        @Override // AreaSelection.Listener
+        public void onAreaSelected(int area) {
+            applyArea(area);
+        }
+
+        /**
+         * Switches to the area. The forecast is taken from the DataItem cached by DataMapUtil when
+         * there is one, so switching to an area the phone already sent needs no fetch.
+         */
+        private void applyArea(int areaId) {
+            if (mAreaApplied && areaId == mWeatherArea) {
+                return;
+            }
+            boolean changed = areaId != mWeatherArea;
+            mWeatherArea = areaId;
+            mAreaKnown = true;
+            if (changed) {
+                mForecast.clear();
+                mGotFullData = false;
+                mFetchAttempts = 0;
+                mFetchBackoffMs = 0;
+                updateLocalForecast(true);
+            }
+
+            DataMap cached = DataMapUtil.getCachedDataMap(DataSyncUtil.getWeatherPath(areaId));
+            if (cached != null) {
+                updateWeather(cached);
+                mAreaApplied = true;
+            } else if (mConnection.isConnected()) {
                 updateWeather(null);
+                mAreaApplied = true;
+            } // otherwise the weather is read in onConnected()
+
+            if (changed) {
+                if (cached == null) {
+                    // the forecast of the old area is no use at the next start
+                    mSnapshot.save(areaId, null);
+                }
+                // the subscription changed: fetch the new area right away
+                updateFetchRequest();
             }
         }
 
+        /**
+         * Shows the area and forecast of the snapshot until the DataItems are read, unless an area
+         * is already selected in this process.
+         */
+        private void loadSnapshot() {
+            int selectedArea = mAreaSelection.getArea();
+            if (selectedArea != DataSyncUtil.AREA_ALL) {
+                applyArea(selectedArea);
+                return;
+            }
+            if (!mSnapshot.load()) {
+                return;
+            }
+            MetricsRecorder.increment(MetricsRecorder.COUNTER_SNAPSHOT_LOADS);
+            mWeatherArea = mSnapshot.getArea();
+            mAreaKnown = true;
+            updateWeatherFromPacked(mSnapshot.getPacked());
+            updateLocalForecast(true);
+        }
+
         private void updateFetchRequest () {
             mUpdateTimeHandler.removeMessages(MSG_REQUEST_FETCH);
             if (!shouldTimerBeRunning()) {
+                mConnection.cancel(mSendFetchRequest);
                 return;
             }
 
@@ -652,24 +946,30 @@ public class AlthykAnalogWatchFaceService  extends CanvasWatchFaceService {
                 long delayMs = WEATHER_UPDATE_RATE_MS - (timeMs % WEATHER_UPDATE_RATE_MS);
                 mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_REQUEST_FETCH, delayMs);
             } else {
-                // next 1min
+                // retry with backoff while the data is incomplete
                 long diffMs = timeMs - mLastFetchedTime;
-                long delayMs = diffMs > REQUEST_FETCH_RATE_MS ? 0 : REQUEST_FETCH_RATE_MS - diffMs;
+                long delayMs = diffMs > mFetchBackoffMs ? 0 : mFetchBackoffMs - diffMs;
                 mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_REQUEST_FETCH, delayMs);
             }
         }
 
+        /**
+         * Returns the wait before the next fetch request: exponential backoff from
+         * REQUEST_FETCH_RATE_MS with jitter in [backoff / 2, backoff), so that several watches
+         * don't retry in lockstep.
+         */
+        private long nextFetchBackoff() {
+            int shift = Math.min(mFetchAttempts, REQUEST_FETCH_MAX_BACKOFF_SHIFT);
+            mFetchAttempts++;
+            long backoffMs = Math.min(REQUEST_FETCH_RATE_MS << shift, WEATHER_UPDATE_RATE_MS);
+            return backoffMs / 2 + (long) (mRandom.nextDouble() * (backoffMs / 2));
+        }
+
         private void updateAnimation() {
-            mAnimationValue = 1f;
-            mAnimationValueForName = 1f;
-            mUpdateTimeHandler.removeMessages(MSG_UPDATE_ANIMATION);
-            mUpdateTimeHandler.removeMessages(MSG_UPDATE_ANIMATION_FOR_NAME);
             if (shouldTimerBeRunning()) {
-                mAnimationStart = System.currentTimeMillis();
-                mAnimationValue = 0f;
-                mAnimationValueForName = 0f;
-                mUpdateTimeHandler.sendEmptyMessage(MSG_UPDATE_ANIMATION);
-                mUpdateTimeHandler.sendEmptyMessage(MSG_UPDATE_ANIMATION_FOR_NAME);
+                mAnimation.start();
+            } else {
+                mAnimation.stop();
             }
         }
 
@@ -679,7 +979,7 @@ public class AlthykAnalogWatchFaceService  extends CanvasWatchFaceService {
          */
         private void updateTimer() {
             if (Log.isLoggable(TAG, Log.DEBUG)) {
-                Log.d(TAG, "updateTimer");
+                Log.d(TAG, "updateTimer: wakeups=" + mUpdateScheduler.getWakeupCount());
             }
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
             if (shouldTimerBeRunning()) {
@@ -692,27 +992,18 @@ public class AlthykAnalogWatchFaceService  extends CanvasWatchFaceService {
          * only run when we're visible and in interactive mode.
          */
         private boolean shouldTimerBeRunning() {
-            return isVisible() && !isInAmbientMode();
+            return mVisible && !isInAmbientMode();
         }
 
         private void updateConfigDataItemAndUiOnStartup() {
-            // Weather Data
-            DataMapUtil.fetchDataMap(mGoogleApiClient, DataSyncUtil.PATH_DATA_WEATHER,
-                    new DataMapUtil.FetchDataMapCallback() {
-                        @Override
-                        public void onDataMapFetched(DataMap config) {
-                            // If the DataItem hasn't been created yet or some keys are missing,
-                            // use the default values.
-                            if (!config.containsKey(DataSyncUtil.KEY_WEATHER_LIST)) {
-                                ArrayList<DataMap> dataMapList = new ArrayList<>();
-                                config.putDataMapArrayList(DataSyncUtil.KEY_WEATHER_LIST, dataMapList);
-                            }
-                            DataMapUtil.putDataItem(mGoogleApiClient, DataSyncUtil.PATH_DATA_WEATHER, config);
-                            updateWeather(config);
-                        }
-                    });
+            // only this process writes the area, so a cached item is current
+            DataMap cached = DataMapUtil.getCachedDataMap(DataSyncUtil.PATH_DATA_AREA);
+            if (cached != null && cached.containsKey(DataSyncUtil.KEY_WEATHER_AREA)) {
+                updateArea(cached);
+                return;
+            }
 
-            // Area
+            // Area (which also reads the weather of the area)
             DataMapUtil.fetchDataMap(mGoogleApiClient, DataSyncUtil.PATH_DATA_AREA,
                     new DataMapUtil.FetchDataMapCallback() {
                         @Override
@@ -721,8 +1012,9 @@ public class AlthykAnalogWatchFaceService  extends CanvasWatchFaceService {
                             // use the default values.
                             if (!config.containsKey(DataSyncUtil.KEY_WEATHER_AREA)) {
                                 config.putInt(DataSyncUtil.KEY_WEATHER_AREA, 0);
+                                DataMapUtil.putDataItem(mGoogleApiClient,
+                                        DataSyncUtil.PATH_DATA_AREA, config);
                             }
-                            DataMapUtil.putDataItem(mGoogleApiClient, DataSyncUtil.PATH_DATA_AREA, config);
                             updateArea(config);
                         }
                     });
@@ -743,13 +1035,11 @@ public class AlthykAnalogWatchFaceService  extends CanvasWatchFaceService {
                         Log.d(TAG, "Config DataItem updated:" + dataMap);
                     }
 
-                    switch (dataItem.getUri().getPath()) {
-                        case DataSyncUtil.PATH_DATA_WEATHER:
-                            updateWeather(dataMap);
-                            break;
-                        case DataSyncUtil.PATH_DATA_AREA:
-                            updateArea(dataMap);
-                            break;
+                    String path = dataItem.getUri().getPath();
+                    if (path.equals(DataSyncUtil.PATH_DATA_AREA)) {
+                        updateArea(dataMap);
+                    } else if (DataSyncUtil.getAreaOfWeatherPath(path) == mWeatherArea) {
+                        updateWeather(dataMap);
                     }
                 }
             } finally {
@@ -757,29 +1047,17 @@ public class AlthykAnalogWatchFaceService  extends CanvasWatchFaceService {
             }
         }
 
-        @Override  // GoogleApiClient.ConnectionCallbacks
-        public void onConnected(Bundle connectionHint) {
+        @Override  // WearableConnection.Callback
+        public void onConnected(GoogleApiClient client) {
             if (Log.isLoggable(TAG, Log.DEBUG)) {
-                Log.d(TAG, "onConnected: " + connectionHint);
+                Log.d(TAG, "onConnected");
             }
-            Wearable.DataApi.addListener(mGoogleApiClient, Engine.this);
+            Wearable.DataApi.addListener(client, Engine.this);
+            // weather that arrived while the listener was removed is read again
+            mAreaApplied = false;
             updateConfigDataItemAndUiOnStartup();
         }
 
-        @Override  // GoogleApiClient.ConnectionCallbacks
-        public void onConnectionSuspended(int cause) {
-            if (Log.isLoggable(TAG, Log.DEBUG)) {
-                Log.d(TAG, "onConnectionSuspended: " + cause);
-            }
-        }
-
-        @Override  // GoogleApiClient.OnConnectionFailedListener
-        public void onConnectionFailed(ConnectionResult result) {
-            if (Log.isLoggable(TAG, Log.DEBUG)) {
-                Log.d(TAG, "onConnectionFailed: " + result);
-            }
-        }
-
     }
 
 }
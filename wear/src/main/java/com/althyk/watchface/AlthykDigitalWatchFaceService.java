@@ -9,34 +9,26 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
+import android.graphics.RectF;
 import android.graphics.Typeface;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
-import android.text.format.Time;
 import android.view.Gravity;
 import android.view.SurfaceHolder;
 import android.view.WindowInsets;
 
+import com.althyk.watchfacecommon.ETime;
+import com.althyk.watchfacecommon.MetricsRecorder;
+
 import java.util.TimeZone;
-import java.util.concurrent.TimeUnit;
 
 public class AlthykDigitalWatchFaceService extends CanvasWatchFaceService {
     private static final String TAG = "AlthykD";
 
-    /**
-     * Update rate in milliseconds for interactive mode
-     * We update once a second to advance the second hand.
-     */
-    private static final long INTERACTIVE_UPDATE_RATE_MS = 8750; // 3 [minutes in ET] = 8750 [msec]
-    private static final long INTERACTIVE_UPDATE_RATE_CHILD_MS = 2917; // 2917 + 2917 + 2916 = 8750
-    private static final long INTERACTIVE_UPDATE_RATE_MS_IN_AMBIENT = 8750 * 20; // 1 [hour in ET] = 8750 * 20 [msec]
     private static final long ANIMATION_DURATION = 500;
-    private static final long ANIMATION_UPDATE_RATE = TimeUnit.SECONDS.toMillis(1) / 30; // 30fps
-
-    private static final double L_E_TIME_RATE = 3600.0 / 175;
 
     private static final Typeface BOLD_TYPEFACE =
             Typeface.create(Typeface.MONOSPACE, Typeface.BOLD);
@@ -51,9 +43,8 @@ public class AlthykDigitalWatchFaceService extends CanvasWatchFaceService {
     private class Engine extends CanvasWatchFaceService.Engine {
         static final int MSG_UPDATE_TIME = 0;
         static final int MSG_UPDATE_TIME_AMBIENT = 1;
-        static final int MSG_UPDATE_ANIMATION = 2;
 
-        Time mTime;
+        final LtClock mClock = new LtClock();
 
         /* device feature */
         boolean mLowBitAmbient;
@@ -78,56 +69,63 @@ public class AlthykDigitalWatchFaceService extends CanvasWatchFaceService {
                 Color.parseColor("#5062a6"),
         };
         float[] mPositions = {0f, 5 / 24f, 7 / 24f, 0.5f, 17 / 24f, 19 / 24f, 1f};
+        DayGradientLut mColorLut;
+
+        /* half backgrounds, recalculated when the size or the peek card changes */
+        final RectF mLTBackgroundRect = new RectF();
+        final RectF mETBackgroundRect = new RectF();
+        final Paint mLTBackgroundPaint = new Paint();
+        final Paint mETBackgroundPaint = new Paint();
+        int mBackgroundWidth = -1;
+        int mBackgroundHeight = -1;
+        int mBackgroundCardHeight = -1;
+
+        /* animation: line draw-in */
+        final AnimationTimeline mAnimation = new AnimationTimeline(
+                new AnimationTimeline.Callback() {
+                    @Override
+                    public void onAnimationFrame() {
+                        if (!shouldTimerBeRunning()) {
+                            mAnimation.stop();
+                        }
+                        invalidate();
+                    }
+                });
+        final int mLineTween =
+                mAnimation.addTween(ANIMATION_DURATION, AnimationTimeline.EASE_OUT_QUAD);
 
-        /* animation */
-        long mAnimationStart;
-        float mAnimationValue = 1f;
+        final UpdateScheduler mUpdateScheduler = new UpdateScheduler();
 
         /**
          * The system notifies the watch face once a minute when the time changes.
-         * This handler updates INTERACTIVE_UPDATE_RATE_MS in interactive mode.
+         * This handler updates at the next ET minute in interactive mode and at the next ET hour
+         * in ambient mode.
          */
         final Handler mUpdateTimeHandler = new Handler() {
             @Override
             public void handleMessage(Message message) {
                 switch (message.what) {
                     case MSG_UPDATE_TIME:
-                        invalidate();
+                        MetricsRecorder.increment(MetricsRecorder.COUNTER_MSG_UPDATE_TIME);
+                        if (!mAnimation.isRunning()) {
+                            invalidate(); // otherwise the next animation frame draws the time
+                        }
                         if (shouldTimerBeRunning()) {
-                            long timeMs = System.currentTimeMillis();
-                            long delayMs = INTERACTIVE_UPDATE_RATE_CHILD_MS
-                                    - ((timeMs % INTERACTIVE_UPDATE_RATE_MS) %
-                                    INTERACTIVE_UPDATE_RATE_CHILD_MS);
+                            long delayMs = mUpdateScheduler.scheduleDelay(
+                                    UpdateScheduler.DIGITAL_INTERACTIVE, System.currentTimeMillis());
                             mUpdateTimeHandler
                                     .sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
                         }
                         break;
                     case MSG_UPDATE_TIME_AMBIENT:
+                        MetricsRecorder.increment(MetricsRecorder.COUNTER_MSG_UPDATE_TIME);
                         invalidate();
                         if (!shouldTimerBeRunning()) {
-                            long timeMs = System.currentTimeMillis();
-                            long delayMs = INTERACTIVE_UPDATE_RATE_MS_IN_AMBIENT
-                                    - (timeMs % INTERACTIVE_UPDATE_RATE_MS_IN_AMBIENT);
+                            long delayMs = mUpdateScheduler.scheduleDelay(
+                                    UpdateScheduler.DIGITAL_AMBIENT, System.currentTimeMillis());
                             mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME_AMBIENT, delayMs);
                         }
                         break;
-                    case MSG_UPDATE_ANIMATION:
-                        invalidate();
-                        if (shouldTimerBeRunning()) {
-                            long diffMs = System.currentTimeMillis() - mAnimationStart;
-                            if (diffMs < ANIMATION_DURATION) {
-                                long delayMs = ANIMATION_UPDATE_RATE -
-                                        diffMs % ANIMATION_UPDATE_RATE;
-                                float t = (float) diffMs / ANIMATION_DURATION;
-                                mAnimationValue = t * (2f -  t);
-                                mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_ANIMATION, delayMs);
-                            } else {
-                                mAnimationValue = 1f;
-                            }
-                        } else {
-                            mAnimationValue = 1f;
-                        }
-                        break;
                 }
 
             }
@@ -137,8 +135,8 @@ public class AlthykDigitalWatchFaceService extends CanvasWatchFaceService {
         final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mTime.clear(intent.getStringExtra("time-zone"));
-                mTime.setToNow();
+                String zoneId = intent.getStringExtra("time-zone");
+                mClock.setTimeZone(zoneId != null ? TimeZone.getTimeZone(zoneId) : null);
             }
         };
         boolean mRegisteredTimeZoneReceiver = false;
@@ -180,14 +178,14 @@ public class AlthykDigitalWatchFaceService extends CanvasWatchFaceService {
 
             updateFontMetrics();
 
-            /* allocate an object to hold the time*/
-            mTime = new Time();
+            mColorLut = new DayGradientLut(mColors, mPositions);
         }
 
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME_AMBIENT);
+            mAnimation.stop();
             unregisterReceiver();
             super.onDestroy();
         }
@@ -253,11 +251,27 @@ public class AlthykDigitalWatchFaceService extends CanvasWatchFaceService {
             updateAnimation();
         }
 
+        @Override
+        public void invalidate() {
+            MetricsRecorder.increment(MetricsRecorder.COUNTER_INVALIDATES);
+            super.invalidate();
+        }
+
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
+            long drawStart = MetricsRecorder.isEnabled() ? System.nanoTime() : 0;
+            int allocToken = MetricsRecorder.beginAllocCount();
+            drawFace(canvas, bounds, System.currentTimeMillis());
+            MetricsRecorder.endAllocCount(allocToken);
+            if (drawStart != 0) {
+                MetricsRecorder.recordFrame(System.nanoTime() - drawStart);
+            }
+        }
+
+        /** Draws the face at the LT instant millis. */
+        private void drawFace(Canvas canvas, Rect bounds, long millis) {
             /* update the time */
-            mTime.setToNow();
-            double etMillis = System.currentTimeMillis() * L_E_TIME_RATE;
+            LtClock clock = mClock.set(millis);
 
             int width = bounds.width();
             int height = bounds.height();
@@ -272,16 +286,15 @@ public class AlthykDigitalWatchFaceService extends CanvasWatchFaceService {
             dist = shouldTimerBeRunning ? dist : centerY * mTextPositionRatio;
 
             // calc LT time
-            int ltHour = mTime.hour;
-            int ltMin = mTime.minute;
+            int ltHour = clock.hour;
+            int ltMin = clock.minute;
             String ltString = String.format("%02d:%02d", ltHour, ltMin);
 
             // draw LT background
             if (shouldTimerBeRunning) {
-                canvas.save();
-                canvas.clipRect(0, 0, width, centerY);
-                canvas.drawColor(calcColor(ltHour, ltMin));
-                canvas.restore();
+                updateBackgroundRects(width, height, cardHeight, centerY);
+                mLTBackgroundPaint.setColor(mColorLut.getColor(ltHour, ltMin));
+                canvas.drawRect(mLTBackgroundRect, mLTBackgroundPaint);
             } else {
                 canvas.drawRect(0, 0, width, height, mBackgroundPaint);
             }
@@ -292,16 +305,13 @@ public class AlthykDigitalWatchFaceService extends CanvasWatchFaceService {
             canvas.drawText(ltString, ltX, ltY, mLTPaint);
 
             if (shouldTimerBeRunning) {
-                int etHour = (int) Math.floor(etMillis / 3600000) % 24; // 1000 * 60 * 60
-                int etMin = (int) Math.floor(etMillis / 60000) % 60; // 1000 * 60
+                int etHour = ETime.getHour(millis);
+                int etMin = ETime.getMinute(millis);
                 String etString = String.format("%02d:%02d", etHour, etMin);
 
                 // draw ET background
-                canvas.save();
-                canvas.clipRect(0, 0, width, height);
-                canvas.clipRect(0, centerY, width, height);
-                canvas.drawColor(calcColor(etHour, etMin));
-                canvas.restore();
+                mETBackgroundPaint.setColor(mColorLut.getColor(etHour, etMin));
+                canvas.drawRect(mETBackgroundRect, mETBackgroundPaint);
 
                 // draw ET
                 float etX = centerX - mETTextWidth / 2f;
@@ -309,7 +319,7 @@ public class AlthykDigitalWatchFaceService extends CanvasWatchFaceService {
                 canvas.drawText(etString, etX, etY, mETPaint);
 
             } else {
-                int etHour = (int) Math.floor(etMillis / 3600000) % 24; // 1000 * 60 * 60
+                int etHour = ETime.getHour(millis);
                 String etString = String.format("%02d:--", etHour);
 
                 // draw ET
@@ -319,7 +329,7 @@ public class AlthykDigitalWatchFaceService extends CanvasWatchFaceService {
             }
 
             // center line
-            canvas.drawLine(0, centerY, width * mAnimationValue, centerY, mLinePaint);
+            canvas.drawLine(0, centerY, width * mAnimation.getValue(mLineTween), centerY, mLinePaint);
         }
 
         @Override
@@ -336,8 +346,7 @@ public class AlthykDigitalWatchFaceService extends CanvasWatchFaceService {
                 registerReceiver();
 
                 // Update time zone in case it changed while we weren't visible
-                mTime.clear(TimeZone.getDefault().getID());
-                mTime.setToNow();
+                mClock.setTimeZone(TimeZone.getDefault());
             } else {
                 unregisterReceiver();
             }
@@ -345,21 +354,17 @@ public class AlthykDigitalWatchFaceService extends CanvasWatchFaceService {
             updateTimer();
         }
 
-        private int calcColor(int hour, int minute) {
-            float value = (hour + minute / 60f) / 24f;
-            int red = 255, green = 255, blue = 255;
-            for (int i = 0; i < mPositions.length - 1; i++) {
-                if (mPositions[i] <= value && value < mPositions[i + 1]) {
-                    float d = mPositions[i + 1] - mPositions[i];
-                    float a = (value - mPositions[i]) / d;
-                    float b = (mPositions[i + 1] - value) / d;
-                    red = Math.round(Color.red(mColors[i]) * b + Color.red(mColors[i + 1]) * a);
-                    green = Math.round(Color.green(mColors[i]) * b + Color.green(mColors[i + 1]) * a);
-                    blue = Math.round(Color.blue(mColors[i]) * b + Color.blue(mColors[i + 1]) * a);
-                    break;
-                }
+        /** Splits the surface above the peek card into the LT (top) and ET (bottom) halves. */
+        private void updateBackgroundRects(int width, int height, int cardHeight, float centerY) {
+            if (width == mBackgroundWidth && height == mBackgroundHeight
+                    && cardHeight == mBackgroundCardHeight) {
+                return;
             }
-            return Color.rgb(red, green, blue);
+            mBackgroundWidth = width;
+            mBackgroundHeight = height;
+            mBackgroundCardHeight = cardHeight;
+            mLTBackgroundRect.set(0, 0, width, centerY);
+            mETBackgroundRect.set(0, centerY, width, height);
         }
 
         private void updateFontMetrics() {
@@ -391,12 +396,10 @@ public class AlthykDigitalWatchFaceService extends CanvasWatchFaceService {
         }
 
         private void updateAnimation() {
-            mAnimationValue = 1f;
-            mUpdateTimeHandler.removeMessages(MSG_UPDATE_ANIMATION);
             if (shouldTimerBeRunning()) {
-                mAnimationStart = System.currentTimeMillis();
-                mAnimationValue = 0f;
-                mUpdateTimeHandler.sendEmptyMessage(MSG_UPDATE_ANIMATION);
+                mAnimation.start();
+            } else {
+                mAnimation.stop();
             }
         }
 
@@ -0,0 +1,229 @@
+package com.althyk.watchface;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+/**
+ * Ambient frames of the analog face without the hands (background, LT ticks, ET ticks and hour
+ * labels), rendered ahead of time on a background thread. The ambient base only changes once an
+ * ET hour, so the engine asks for the frame of the next ET hour after each ambient draw and the
+ * next onTimeTick only has to blit it and draw the hands.
+ *
+ * There are two frame buffers: the one the engine shows and the one being prepared. The cache
+ * owns copies of the paints, so rendering never touches the paints of the engine.
+ */
+final class AmbientFrameCache {
+    /** Variant bits */
+    static final int VARIANT_LOW_BIT = 1;
+    static final int VARIANT_BURN_IN = 2;
+
+    private static final long NO_KEY = -1;
+
+    private final AnalogGeometry mGeometry = new AnalogGeometry(); // render thread only
+    private final Rect mBounds = new Rect();                          // render thread only
+    private final String[] mHourLabels;
+    private final float[] mHourLabelHalfWidths;
+    private final float[] mHourLabelHalfHeights;
+
+    // [variant & VARIANT_LOW_BIT]
+    private final Paint[] mTickPaints = new Paint[2];
+    private final Paint[] mETTickPaints = new Paint[2];
+    private final Paint[] mAccentETTickPaints = new Paint[2];
+    private final Paint[] mTextPaints = new Paint[2];
+
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+
+    // guarded by this
+    private final Bitmap[] mFrames = new Bitmap[2];
+    private final long[] mKeys = {NO_KEY, NO_KEY};
+    private int mShown = -1;
+    private long mPendingKey = NO_KEY;
+
+    AmbientFrameCache(Paint tickPaint, Paint etTickPaint, Paint accentETTickPaint,
+                      Paint textPaint, String[] hourLabels, float[] hourLabelHalfWidths,
+                      float[] hourLabelHalfHeights) {
+        mHourLabels = hourLabels;
+        mHourLabelHalfWidths = hourLabelHalfWidths;
+        mHourLabelHalfHeights = hourLabelHalfHeights;
+        copyPaints(mTickPaints, tickPaint);
+        copyPaints(mETTickPaints, etTickPaint);
+        copyPaints(mAccentETTickPaints, accentETTickPaint);
+        copyPaints(mTextPaints, textPaint);
+
+        mThread = new HandlerThread("AmbientFrameCache");
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    static int variantOf(boolean lowBit, boolean burnIn) {
+        return (lowBit ? VARIANT_LOW_BIT : 0) | (burnIn ? VARIANT_BURN_IN : 0);
+    }
+
+    /**
+     * Returns the prepared frame, or null if it isn't ready. The returned frame stays untouched
+     * until another frame is returned.
+     */
+    synchronized Bitmap get(Rect bounds, int startStep, int etHour, boolean weather,
+                            int variant) {
+        long key = key(bounds, startStep, etHour, weather, variant);
+        for (int i = 0; i < mFrames.length; i++) {
+            if (mKeys[i] == key) {
+                mShown = i;
+                return mFrames[i];
+            }
+        }
+        return null;
+    }
+
+    /** Renders the frame in the background into the buffer that isn't shown. */
+    void prepare(Rect bounds, final int startStep, final int etHour, final boolean weather,
+                 final int variant) {
+        final long key = key(bounds, startStep, etHour, weather, variant);
+        synchronized (this) {
+            if (mPendingKey == key || mKeys[0] == key || mKeys[1] == key) {
+                return;
+            }
+            mPendingKey = key;
+        }
+
+        final Rect frameBounds = new Rect(bounds);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                int index;
+                Bitmap frame;
+                synchronized (AmbientFrameCache.this) {
+                    if (mPendingKey != key) {
+                        return; // superseded by a newer request
+                    }
+                    index = mShown == 0 ? 1 : 0;
+                    mKeys[index] = NO_KEY;
+                    frame = mFrames[index];
+                }
+
+                int width = frameBounds.width();
+                int height = frameBounds.height();
+                if (frame == null || frame.getWidth() != width || frame.getHeight() != height) {
+                    if (frame != null) {
+                        frame.recycle();
+                    }
+                    frame = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                }
+                render(new Canvas(frame), frameBounds, startStep, etHour, weather, variant);
+
+                synchronized (AmbientFrameCache.this) {
+                    mFrames[index] = frame;
+                    mKeys[index] = key;
+                    if (mPendingKey == key) {
+                        mPendingKey = NO_KEY;
+                    }
+                }
+            }
+        });
+    }
+
+    /** Stops the render thread and frees the frames. */
+    void quit() {
+        synchronized (this) {
+            mKeys[0] = NO_KEY;
+            mKeys[1] = NO_KEY;
+            mPendingKey = NO_KEY;
+            mShown = -1;
+        }
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (AmbientFrameCache.this) {
+                    for (int i = 0; i < mFrames.length; i++) {
+                        if (mFrames[i] != null) {
+                            mFrames[i].recycle();
+                            mFrames[i] = null;
+                        }
+                    }
+                }
+            }
+        });
+        mThread.quitSafely();
+    }
+
+    /** Same drawing as the ambient layer of the engine, see drawLayer(). */
+    private void render(Canvas canvas, Rect bounds, int startStep, int etHour, boolean weather,
+                        int variant) {
+        AnalogGeometry geometry = mGeometry;
+        if (!bounds.equals(mBounds)) {
+            mBounds.set(bounds);
+            geometry.update(bounds);
+        }
+        float centerX = geometry.centerX;
+        float centerY = geometry.centerY;
+
+        int paintIndex = (variant & VARIANT_LOW_BIT) != 0 ? 1 : 0;
+        boolean burnIn = (variant & VARIANT_BURN_IN) != 0;
+        Paint tickPaint = mTickPaints[paintIndex];
+        Paint etTickPaint = mETTickPaints[paintIndex];
+        Paint accentETTickPaint = mAccentETTickPaints[paintIndex];
+        Paint textPaint = mTextPaints[paintIndex];
+
+        canvas.drawColor(Color.BLACK);
+
+        // the LT ticks never move, so they are left out on burn-in sensitive screens
+        if (!burnIn) {
+            canvas.drawLines(geometry.ltTicks, tickPaint);
+        }
+
+        float[] etTicks;
+        if (weather) {
+            etTicks = geometry.etWeatherTicks;
+            etTickPaint.setARGB(255, 128, 128, 128);
+            accentETTickPaint.setARGB(255, 200, 200, 200);
+        } else {
+            etTicks = geometry.etTicks;
+            etTickPaint.setARGB(255, 0, 0, 0);
+            accentETTickPaint.setARGB(255, 0, 0, 0);
+        }
+        // no thick strokes on burn-in sensitive screens
+        Paint accentPaint = burnIn ? etTickPaint : accentETTickPaint;
+
+        float[] textAnchors = geometry.etTextAnchors;
+        for (int etTickIndex = 0; etTickIndex < 20; etTickIndex++) {
+            int step = (startStep + etTickIndex * AnalogGeometry.ET_HOUR_IN_STEPS)
+                    % AnalogGeometry.RING_STEPS;
+
+            int tickHour = etHour + etTickIndex;
+            canvas.drawLine(centerX + etTicks[step * 4], centerY + etTicks[step * 4 + 1],
+                    centerX + etTicks[step * 4 + 2], centerY + etTicks[step * 4 + 3],
+                    tickHour % 8 != 0 ? etTickPaint : accentPaint);
+
+            if (etTickIndex == 0 || tickHour % 8 == 0) {
+                int labelHour = tickHour % 24;
+                float textX = textAnchors[step * 2] - mHourLabelHalfWidths[labelHour];
+                float textY = textAnchors[step * 2 + 1] + mHourLabelHalfHeights[labelHour];
+                canvas.drawText(mHourLabels[labelHour], centerX + textX, centerY + textY,
+                        textPaint);
+            }
+        }
+    }
+
+    private static void copyPaints(Paint[] paints, Paint source) {
+        paints[0] = new Paint(source);
+        paints[1] = new Paint(source);
+        paints[1].setAntiAlias(false);
+    }
+
+    // | width (12bit) | height (12bit) | start step (9bit) | ET hour (5bit) | weather | variant |
+    private static long key(Rect bounds, int startStep, int etHour, boolean weather,
+                            int variant) {
+        long key = bounds.width() & 0xfff;
+        key = key << 12 | (bounds.height() & 0xfff);
+        key = key << 9 | startStep;
+        key = key << 5 | etHour;
+        key = key << 1 | (weather ? 1 : 0);
+        return key << 2 | variant;
+    }
+}
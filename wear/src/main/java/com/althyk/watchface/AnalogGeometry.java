@@ -0,0 +1,144 @@
+package com.althyk.watchface;
+
+import android.graphics.Rect;
+
+/**
+ * Geometry of the analog face. All the angles drawn by the face are quantized, so the
+ * sin/cos values live in static tables and the end points of the ticks and weather icons are
+ * only recalculated when the surface size changes.
+ */
+final class AnalogGeometry {
+    /**
+     * The ring is divided into steps of 12.5 [sec in LT]. 1 [hour in ET] = 175 [sec in LT] is
+     * 14 steps, so every ET tick lands on a step and every weather icon (half an ET hour later)
+     * lands on a step too.
+     */
+    static final int RING_STEPS = 288;
+    static final long RING_STEP_IN_LT_MS = 60 * 60 * 1000 / RING_STEPS;
+    static final int ET_HOUR_IN_STEPS = 14;
+    static final int LT_TICK_IN_STEPS = RING_STEPS / 12;
+
+    /** The hands move once a second (minute hand) or once a minute (hour hand). */
+    static final int HAND_STEPS = 60 * 60;
+
+    static final int LT_TICK_COUNT = 12;
+
+    private static final float[] RING_SIN = new float[RING_STEPS];
+    private static final float[] RING_COS = new float[RING_STEPS];
+    private static final float[] HAND_SIN = new float[HAND_STEPS];
+    private static final float[] HAND_COS = new float[HAND_STEPS];
+
+    static {
+        for (int i = 0; i < RING_STEPS; i++) {
+            double rad = 2 * Math.PI * i / RING_STEPS;
+            RING_SIN[i] = (float) Math.sin(rad);
+            RING_COS[i] = (float) Math.cos(rad);
+        }
+        for (int i = 0; i < HAND_STEPS; i++) {
+            double rad = 2 * Math.PI * i / HAND_STEPS;
+            HAND_SIN[i] = (float) Math.sin(rad);
+            HAND_COS[i] = (float) Math.cos(rad);
+        }
+    }
+
+    private int mLeft, mTop, mRight, mBottom;
+    private boolean mValid = false;
+
+    float centerX;
+    float centerY;
+
+    /** LT ticks as (x0, y0, x1, y1) in absolute coordinates, ready for Canvas.drawLines. */
+    final float[] ltTicks = new float[LT_TICK_COUNT * 4];
+
+    /** ET ticks as (x0, y0, x1, y1) relative to the center, indexed by ring step. */
+    final float[] etTicks = new float[RING_STEPS * 4];
+    final float[] etWeatherTicks = new float[RING_STEPS * 4];
+
+    /** Text and weather icon anchors as (x, y) relative to the center, indexed by ring step. */
+    final float[] etTextAnchors = new float[RING_STEPS * 2];
+    final float[] weatherAnchors = new float[RING_STEPS * 2];
+
+    float minuteHandLength;
+    float hourHandLength;
+
+    /** Rebuilds the cached coordinates if the bounds changed. Returns true if rebuilt. */
+    boolean update(Rect bounds) {
+        if (mValid && bounds.left == mLeft && bounds.top == mTop
+                && bounds.right == mRight && bounds.bottom == mBottom) {
+            return false;
+        }
+        mValid = true;
+        mLeft = bounds.left;
+        mTop = bounds.top;
+        mRight = bounds.right;
+        mBottom = bounds.bottom;
+
+        centerX = bounds.exactCenterX();
+        centerY = bounds.exactCenterY();
+        minuteHandLength = centerX - 40;
+        hourHandLength = centerX - 115;
+
+        float innerTickRadius = centerX - 100;
+        float outerTickRadius = centerX - 90;
+        for (int tickIndex = 0; tickIndex < LT_TICK_COUNT; tickIndex++) {
+            int step = tickIndex * LT_TICK_IN_STEPS;
+            ltTicks[tickIndex * 4]     = centerX + RING_SIN[step] * innerTickRadius;
+            ltTicks[tickIndex * 4 + 1] = centerY - RING_COS[step] * innerTickRadius;
+            ltTicks[tickIndex * 4 + 2] = centerX + RING_SIN[step] * outerTickRadius;
+            ltTicks[tickIndex * 4 + 3] = centerY - RING_COS[step] * outerTickRadius;
+        }
+
+        fillLines(etTicks, centerX - 20, centerX - 10);
+        fillLines(etWeatherTicks, centerX - 15, centerX - 14);
+        fillPoints(etTextAnchors, centerX - 40);
+        fillPoints(weatherAnchors, centerX - 15);
+        return true;
+    }
+
+    /** Returns the ring step of an LT time, 0 being 12 o'clock. */
+    static int ringStep(long ltMillis) {
+        return (int) ((ltMillis % (60 * 60 * 1000)) / RING_STEP_IN_LT_MS);
+    }
+
+    static float ringSin(int step) {
+        return RING_SIN[step % RING_STEPS];
+    }
+
+    static float ringCos(int step) {
+        return RING_COS[step % RING_STEPS];
+    }
+
+    /** Returns the hand step of the minute hand, which advances once a second. */
+    static int minuteHandStep(int minute, int second) {
+        return minute * 60 + second;
+    }
+
+    /** Returns the hand step of the hour hand, which advances once a minute. */
+    static int hourHandStep(int hour, int minute) {
+        return ((hour % 12) * 60 + minute) * 5;
+    }
+
+    static float handSin(int step) {
+        return HAND_SIN[step % HAND_STEPS];
+    }
+
+    static float handCos(int step) {
+        return HAND_COS[step % HAND_STEPS];
+    }
+
+    private static void fillLines(float[] lines, float inner, float outer) {
+        for (int step = 0; step < RING_STEPS; step++) {
+            lines[step * 4]     = RING_SIN[step] * inner;
+            lines[step * 4 + 1] = -RING_COS[step] * inner;
+            lines[step * 4 + 2] = RING_SIN[step] * outer;
+            lines[step * 4 + 3] = -RING_COS[step] * outer;
+        }
+    }
+
+    private static void fillPoints(float[] points, float radius) {
+        for (int step = 0; step < RING_STEPS; step++) {
+            points[step * 2]     = RING_SIN[step] * radius;
+            points[step * 2 + 1] = -RING_COS[step] * radius;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.althyk.watchface;
+
+import android.view.Choreographer;
+
+import com.althyk.watchfacecommon.MetricsRecorder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * All the tweens of an engine, driven by one Choreographer frame callback. Each frame updates
+ * every running tween and then calls onAnimationFrame() once, so the engine invalidates once per
+ * frame whatever the number of tweens. The callback stops when the last tween has finished.
+ *
+ * Frames are posted FRAME_INTERVAL_NANOS apart and land on a vsync. Main thread only.
+ */
+final class AnimationTimeline implements Choreographer.FrameCallback {
+    /** Easings */
+    static final int EASE_LINEAR = 0;
+    static final int EASE_OUT_QUAD = 1;
+
+    private static final long FRAME_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1) / 30; // 30fps
+    private static final int MAX_TWEENS = 4;
+
+    interface Callback {
+        void onAnimationFrame();
+    }
+
+    private final Choreographer mChoreographer = Choreographer.getInstance();
+    private final Callback mCallback;
+
+    private int mTweenCount = 0;
+    private final long[] mDurationsNanos = new long[MAX_TWEENS];
+    private final int[] mEasings = new int[MAX_TWEENS];
+    private final float[] mValues = new float[MAX_TWEENS];
+
+    private boolean mRunning = false;
+    private long mStartNanos;     // frame time of the first frame, 0 until it arrives
+    private long mLastFrameNanos;
+
+    AnimationTimeline(Callback callback) {
+        mCallback = callback;
+    }
+
+    /** Adds a tween and returns its id for getValue(). A tween is finished (1) until start(). */
+    int addTween(long durationMs, int easing) {
+        int tween = mTweenCount++;
+        mDurationsNanos[tween] = TimeUnit.MILLISECONDS.toNanos(durationMs);
+        mEasings[tween] = easing;
+        mValues[tween] = 1f;
+        return tween;
+    }
+
+    /** Returns the eased value of the tween in [0, 1]. */
+    float getValue(int tween) {
+        return mValues[tween];
+    }
+
+    boolean isRunning() {
+        return mRunning;
+    }
+
+    /** Restarts every tween from 0 at the next frame. */
+    void start() {
+        for (int i = 0; i < mTweenCount; i++) {
+            mValues[i] = 0f;
+        }
+        mStartNanos = 0;
+        mLastFrameNanos = 0;
+        if (!mRunning) {
+            mRunning = true;
+            mChoreographer.postFrameCallback(this);
+        }
+    }
+
+    /** Finishes every tween right away. */
+    void stop() {
+        for (int i = 0; i < mTweenCount; i++) {
+            mValues[i] = 1f;
+        }
+        if (mRunning) {
+            mRunning = false;
+            mChoreographer.removeFrameCallback(this);
+        }
+    }
+
+    @Override // Choreographer.FrameCallback
+    public void doFrame(long frameTimeNanos) {
+        if (!mRunning) {
+            return;
+        }
+        MetricsRecorder.increment(MetricsRecorder.COUNTER_ANIMATION_FRAMES);
+        if (mStartNanos == 0) {
+            mStartNanos = frameTimeNanos;
+        } else {
+            long skipped = (frameTimeNanos - mLastFrameNanos) / FRAME_INTERVAL_NANOS - 1;
+            if (skipped > 0) {
+                MetricsRecorder.add(MetricsRecorder.COUNTER_DROPPED_FRAMES, skipped);
+            }
+        }
+        mLastFrameNanos = frameTimeNanos;
+
+        long elapsedNanos = frameTimeNanos - mStartNanos;
+        boolean running = false;
+        for (int i = 0; i < mTweenCount; i++) {
+            if (mValues[i] >= 1f) {
+                continue;
+            }
+            MetricsRecorder.increment(MetricsRecorder.COUNTER_ANIMATION_TWEEN_STEPS);
+            if (elapsedNanos >= mDurationsNanos[i]) {
+                mValues[i] = 1f;
+                continue;
+            }
+            float t = (float) elapsedNanos / mDurationsNanos[i];
+            mValues[i] = mEasings[i] == EASE_OUT_QUAD ? t * (2f - t) : t;
+            running = true;
+        }
+
+        mRunning = running;
+        mCallback.onAnimationFrame(); // may stop() the timeline
+        if (mRunning) {
+            long delayMs = TimeUnit.NANOSECONDS.toMillis(FRAME_INTERVAL_NANOS
+                    - (System.nanoTime() - frameTimeNanos) % FRAME_INTERVAL_NANOS);
+            mChoreographer.postFrameCallbackDelayed(this, delayMs);
+        }
+    }
+}
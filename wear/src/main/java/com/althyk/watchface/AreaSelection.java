@@ -0,0 +1,163 @@
+package com.althyk.watchface;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.althyk.watchfacecommon.DataMapUtil;
+import com.althyk.watchfacecommon.DataSyncUtil;
+import com.althyk.watchfacecommon.MetricsRecorder;
+import com.althyk.watchfacecommon.WearableConnection;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.DataMap;
+
+import java.util.ArrayList;
+
+/**
+ * The selected weather area, shared by the config activity and the watch faces of this process.
+ *
+ * select() applies a selection to the listeners right away and commits it to the area DataItem
+ * only after COMMIT_DELAY_MS without another selection, so rapid changes end up in one write. The
+ * write is skipped when the area equals the committed one, which the faces report through
+ * onCommitted() whenever they read the DataItem.
+ *
+ * After a write, reads of another area are older than the write (e.g. a data event of the
+ * previous write delivered late) and are ignored until the written area has been read back, so
+ * they can't revert the selection. A write that isn't read back within WRITE_TIMEOUT_MS of being
+ * issued (it was skipped as unchanged, or failed) stops being awaited. Main thread only.
+ */
+final class AreaSelection {
+    private static final String TAG = "AreaSelection";
+
+    private static final long COMMIT_DELAY_MS = 1000;
+    private static final long WRITE_TIMEOUT_MS = 10000;
+
+    interface Listener {
+        void onAreaSelected(int area);
+    }
+
+    private static AreaSelection sInstance;
+
+    private final WearableConnection mConnection;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final ArrayList<Listener> mListeners = new ArrayList<>();
+
+    private int mArea = DataSyncUtil.AREA_ALL;
+    private int mCommittedArea = DataSyncUtil.AREA_ALL;
+    private boolean mCommitPending = false;
+    // the area of the last write until it is read back, AREA_ALL if none is awaited
+    private int mAwaitedArea = DataSyncUtil.AREA_ALL;
+
+    private final Runnable mCommitRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mCommitPending = false;
+            commit();
+            mConnection.release();
+        }
+    };
+
+    private final Runnable mWriteTimeoutRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mAwaitedArea = DataSyncUtil.AREA_ALL;
+        }
+    };
+
+    static AreaSelection getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new AreaSelection(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private AreaSelection(Context context) {
+        mConnection = WearableConnection.getInstance(context);
+    }
+
+    /** Returns the selected area, or DataSyncUtil.AREA_ALL if it isn't known yet. */
+    int getArea() {
+        return mArea;
+    }
+
+    void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /** Selects an area for the user. Returns false if it was already selected. */
+    boolean select(int area) {
+        if (area == mArea) {
+            return false;
+        }
+        MetricsRecorder.increment(MetricsRecorder.COUNTER_AREA_SELECTIONS);
+        mArea = area;
+        notifyListeners(area);
+
+        // the connection is held until the debounced commit has been issued
+        mHandler.removeCallbacks(mCommitRunnable);
+        if (!mCommitPending) {
+            mCommitPending = true;
+            mConnection.acquire();
+        }
+        mHandler.postDelayed(mCommitRunnable, COMMIT_DELAY_MS);
+        return true;
+    }
+
+    /** Reports the area read from the DataItem. */
+    void onCommitted(int area) {
+        if (mAwaitedArea != DataSyncUtil.AREA_ALL) {
+            if (area != mAwaitedArea) {
+                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "ignored area " + area + ", awaiting " + mAwaitedArea);
+                }
+                return;
+            }
+            mAwaitedArea = DataSyncUtil.AREA_ALL;
+            mHandler.removeCallbacks(mWriteTimeoutRunnable);
+        }
+        mCommittedArea = area;
+        if (!mCommitPending && area != mArea) {
+            // changed elsewhere, e.g. restored from the phone
+            mArea = area;
+            notifyListeners(area);
+        }
+    }
+
+    private void commit() {
+        final int area = mArea;
+        if (area == mCommittedArea) {
+            MetricsRecorder.increment(MetricsRecorder.COUNTER_DATA_WRITES_SKIPPED);
+            return;
+        }
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "commit area " + area);
+        }
+        mCommittedArea = area;
+        mAwaitedArea = area;
+        mHandler.removeCallbacks(mWriteTimeoutRunnable);
+        final DataMap configKeysToOverwrite = new DataMap();
+        configKeysToOverwrite.putInt(DataSyncUtil.KEY_WEATHER_AREA, area);
+        mConnection.whenConnected(new WearableConnection.Callback() {
+            @Override
+            public void onConnected(GoogleApiClient client) {
+                DataMapUtil.overwriteKeysInDataMap(client,
+                        DataSyncUtil.PATH_DATA_AREA, configKeysToOverwrite);
+                if (mAwaitedArea == area) {
+                    mHandler.removeCallbacks(mWriteTimeoutRunnable);
+                    mHandler.postDelayed(mWriteTimeoutRunnable, WRITE_TIMEOUT_MS);
+                }
+            }
+        });
+    }
+
+    private void notifyListeners(int area) {
+        for (int i = 0; i < mListeners.size(); i++) {
+            mListeners.get(i).onAreaSelected(area);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.althyk.watchface;
+
+import android.graphics.Color;
+
+/**
+ * Colours of the day gradient for each of the 1440 minutes of a day. The table is built once
+ * with the same interpolation the digital face used per frame, so a lookup returns exactly the
+ * colour that interpolation returned.
+ */
+final class DayGradientLut {
+    static final int MINUTES_IN_DAY = 24 * 60;
+
+    private final int[] mColors = new int[MINUTES_IN_DAY];
+
+    /** positions are in [0, 1] and ascending, one per colour. */
+    DayGradientLut(int[] colors, float[] positions) {
+        for (int minuteOfDay = 0; minuteOfDay < MINUTES_IN_DAY; minuteOfDay++) {
+            mColors[minuteOfDay] = interpolate(colors, positions, minuteOfDay / 60,
+                    minuteOfDay % 60);
+        }
+    }
+
+    int getColor(int hour, int minute) {
+        return mColors[hour * 60 + minute];
+    }
+
+    private static int interpolate(int[] colors, float[] positions, int hour, int minute) {
+        float value = (hour + minute / 60f) / 24f;
+        int red = 255, green = 255, blue = 255;
+        for (int i = 0; i < positions.length - 1; i++) {
+            if (positions[i] <= value && value < positions[i + 1]) {
+                float d = positions[i + 1] - positions[i];
+                float a = (value - positions[i]) / d;
+                float b = (positions[i + 1] - value) / d;
+                red = Math.round(Color.red(colors[i]) * b + Color.red(colors[i + 1]) * a);
+                green = Math.round(Color.green(colors[i]) * b + Color.green(colors[i + 1]) * a);
+                blue = Math.round(Color.blue(colors[i]) * b + Color.blue(colors[i + 1]) * a);
+                break;
+            }
+        }
+        return Color.rgb(red, green, blue);
+    }
+}
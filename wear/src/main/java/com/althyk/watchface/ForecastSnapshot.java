@@ -0,0 +1,108 @@
+package com.althyk.watchface;
+
+import android.content.Context;
+import android.os.AsyncTask;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.althyk.watchfacecommon.ForecastCodec;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The area and forecast the analog face showed last, kept in a file so that a new engine draws a
+ * complete ring from its first frame. The Wearable API reads that follow only reconcile.
+ *
+ * Layout: version (1) | area (1) | forecast in ForecastCodec format. A snapshot of another
+ * version is ignored. The file is a few dozen bytes, so it is read synchronously; it is written
+ * through AtomicFile on a background executor, and only when it changes.
+ */
+final class ForecastSnapshot {
+    private static final String TAG = "ForecastSnapshot";
+
+    static final int VERSION = 1;
+
+    private static final String FILE_NAME = "forecast_snapshot";
+    private static final int HEADER_SIZE = 2;
+
+    private final AtomicFile mFile;
+
+    // the last loaded or saved snapshot, main thread only
+    private int mArea = -1;
+    private byte[] mPacked;
+
+    ForecastSnapshot(Context context) {
+        mFile = new AtomicFile(new File(context.getFilesDir(), FILE_NAME));
+    }
+
+    /** Reads the snapshot. Returns false if there is none or it can't be used. */
+    boolean load() {
+        byte[] data;
+        try {
+            data = mFile.readFully();
+        } catch (FileNotFoundException e) {
+            return false;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read the snapshot", e);
+            return false;
+        }
+        if (data.length < HEADER_SIZE || data[0] != VERSION) {
+            return false;
+        }
+        byte[] packed = Arrays.copyOfRange(data, HEADER_SIZE, data.length);
+        if (!ForecastCodec.isValid(packed)) {
+            return false;
+        }
+        mArea = data[1] & 0xff;
+        mPacked = packed;
+        return true;
+    }
+
+    /** Returns the area of the loaded snapshot. */
+    int getArea() {
+        return mArea;
+    }
+
+    /** Returns the forecast of the loaded snapshot in ForecastCodec format. */
+    byte[] getPacked() {
+        return mPacked;
+    }
+
+    /** Saves the area and its forecast (null for none) in the background. */
+    void save(int area, byte[] packed) {
+        if (packed == null) {
+            packed = new ForecastCodec.Writer(0, 0).toByteArray();
+        }
+        if (area == mArea && Arrays.equals(packed, mPacked)) {
+            return;
+        }
+        mArea = area;
+        mPacked = packed;
+
+        final byte[] data = new byte[HEADER_SIZE + packed.length];
+        data[0] = VERSION;
+        data[1] = (byte) area;
+        System.arraycopy(packed, 0, data, HEADER_SIZE, packed.length);
+        // serial, so the last save wins
+        AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                FileOutputStream out = null;
+                try {
+                    out = mFile.startWrite();
+                    out.write(data);
+                    mFile.finishWrite(out);
+                } catch (IOException e) {
+                    Log.w(TAG, "Failed to write the snapshot", e);
+                    if (out != null) {
+                        mFile.failWrite(out);
+                    }
+                }
+            }
+        });
+    }
+}
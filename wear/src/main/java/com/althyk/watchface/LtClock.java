@@ -0,0 +1,86 @@
+package com.althyk.watchface;
+
+import java.util.TimeZone;
+
+/**
+ * Local time of day for the draw path. The UTC offset is looked up once and cached until the
+ * next offset transition (DST), so set() is only integer arithmetic on epoch millis.
+ * The cached offset is dropped by setTimeZone(), which the engines call on
+ * ACTION_TIMEZONE_CHANGED and when they become visible.
+ */
+final class LtClock {
+    private static final long SECOND_IN_MS = 1000;
+    private static final long MINUTE_IN_MS = 60 * SECOND_IN_MS;
+    private static final long HOUR_IN_MS = 60 * MINUTE_IN_MS;
+    private static final long DAY_IN_MS = 24 * HOUR_IN_MS;
+
+    // transitions are searched day by day up to this far ahead
+    private static final int TRANSITION_SEARCH_DAYS = 7;
+
+    private TimeZone mZone;
+    private int mOffsetMs;
+    // the cached offset is valid for [mValidFromMs, mValidUntilMs)
+    private long mValidFromMs = Long.MAX_VALUE;
+    private long mValidUntilMs = Long.MIN_VALUE;
+
+    int hour;
+    int minute;
+    int second;
+
+    LtClock() {
+        mZone = TimeZone.getDefault();
+    }
+
+    /** Switches to a zone, or back to the default zone for null. */
+    void setTimeZone(TimeZone zone) {
+        mZone = zone != null ? zone : TimeZone.getDefault();
+        mValidFromMs = Long.MAX_VALUE;
+        mValidUntilMs = Long.MIN_VALUE;
+    }
+
+    /** Sets hour, minute and second to the local time of the epoch millis. */
+    LtClock set(long millis) {
+        if (millis < mValidFromMs || millis >= mValidUntilMs) {
+            updateOffset(millis);
+        }
+        long msOfDay = (millis + mOffsetMs) % DAY_IN_MS;
+        if (msOfDay < 0) {
+            msOfDay += DAY_IN_MS;
+        }
+        hour = (int) (msOfDay / HOUR_IN_MS);
+        minute = (int) (msOfDay / MINUTE_IN_MS % 60);
+        second = (int) (msOfDay / SECOND_IN_MS % 60);
+        return this;
+    }
+
+    /** Returns the first instant after the cached offset stops being valid. */
+    long getNextTransition() {
+        return mValidUntilMs;
+    }
+
+    private void updateOffset(long millis) {
+        int offset = mZone.getOffset(millis);
+        mOffsetMs = offset;
+        mValidFromMs = millis;
+
+        // find the first day with another offset, then the transition in that day
+        long low = millis;
+        for (int day = 1; day <= TRANSITION_SEARCH_DAYS; day++) {
+            long high = millis + day * DAY_IN_MS;
+            if (mZone.getOffset(high) != offset) {
+                while (high - low > 1) {
+                    long mid = low + (high - low) / 2;
+                    if (mZone.getOffset(mid) == offset) {
+                        low = mid;
+                    } else {
+                        high = mid;
+                    }
+                }
+                mValidUntilMs = high;
+                return;
+            }
+            low = high;
+        }
+        mValidUntilMs = low;
+    }
+}
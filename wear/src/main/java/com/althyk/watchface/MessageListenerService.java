@@ -1,78 +1,152 @@
 package com.althyk.watchface;
 
-import android.os.Bundle;
 import android.util.Log;
 
 import com.althyk.watchfacecommon.DataMapUtil;
 import com.althyk.watchfacecommon.DataSyncUtil;
-import com.google.android.gms.common.ConnectionResult;
+import com.althyk.watchfacecommon.ETime;
+import com.althyk.watchfacecommon.ForecastCodec;
+import com.althyk.watchfacecommon.MessageSender;
+import com.althyk.watchfacecommon.MetricsRecorder;
+import com.althyk.watchfacecommon.NodeDirectory;
+import com.althyk.watchfacecommon.WearableConnection;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.wearable.DataMap;
 import com.google.android.gms.wearable.MessageEvent;
-import com.google.android.gms.wearable.Wearable;
+import com.google.android.gms.wearable.Node;
 import com.google.android.gms.wearable.WearableListenerService;
 
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
 
-public class MessageListenerService extends WearableListenerService
-        implements GoogleApiClient.ConnectionCallbacks, GoogleApiClient.OnConnectionFailedListener {
+public class MessageListenerService extends WearableListenerService {
     private static final String TAG = "MessageListenerService";
 
-    private GoogleApiClient mGoogleApiClient;
+    private WearableConnection mConnection;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        mConnection = WearableConnection.getInstance(this);
+        mConnection.acquire();
+    }
+
+    @Override
+    public void onDestroy() {
+        mConnection.release();
+        super.onDestroy();
+    }
 
     @Override // WearableListenerService
     public void onMessageReceived(MessageEvent messageEvent) {
         Log.d(TAG, "onMessageReceived");
         // check PATH
-        if (!messageEvent.getPath().equals(DataSyncUtil.PATH_DATA_WEATHER)) {
+        String path = messageEvent.getPath();
+        if (!path.equals(DataSyncUtil.PATH_DATA_WEATHER)
+                && !path.equals(DataSyncUtil.PATH_DEBUG_METRICS)) {
             return;
         }
 
-        if (mGoogleApiClient == null) {
-            mGoogleApiClient = new GoogleApiClient.Builder(this).addConnectionCallbacks(this)
-                    .addOnConnectionFailedListener(this).addApi(Wearable.API).build();
-        }
-
-        if (!mGoogleApiClient.isConnected()) {
-            ConnectionResult connectionResult =
-                    mGoogleApiClient.blockingConnect(30, TimeUnit.SECONDS);
-            if (!connectionResult.isSuccess()) {
-                Log.e(TAG, "Failed to connect to GoogleApiClient.");
-                return;
+        final byte[] rawData = messageEvent.getData();
+        final DataMap dataMap = rawData == null ? new DataMap() : DataMap.fromByteArray(rawData);
+        final boolean isMetrics = path.equals(DataSyncUtil.PATH_DEBUG_METRICS);
+        mConnection.whenConnected(new WearableConnection.Callback() {
+            @Override
+            public void onConnected(GoogleApiClient client) {
+                if (isMetrics) {
+                    sendMetrics(client, dataMap);
+                } else {
+                    syncWeather(client, dataMap, rawData == null ? 0 : rawData.length);
+                }
             }
-        }
+        });
+    }
 
-        byte[] rawData = messageEvent.getData();
-        DataMap dataMap = DataMap.fromByteArray(rawData);
-        syncWeather(dataMap);
+    @Override // WearableListenerService
+    public void onPeerConnected(Node peer) {
+        NodeDirectory.getInstance().onPeerConnected(peer);
+    }
 
+    @Override // WearableListenerService
+    public void onPeerDisconnected(Node peer) {
+        NodeDirectory.getInstance().onPeerDisconnected(peer);
     }
 
-    @Override // GoogleApiClient.ConnectionCallbacks
-    public void onConnected(Bundle connectionHint) {
-        if (Log.isLoggable(TAG, Log.DEBUG)) {
-            Log.d(TAG, "onConnected: " + connectionHint);
+    /**
+     * Applies the debug metrics request (enable/disable, reset) and replies with a dump.
+     */
+    private void sendMetrics(GoogleApiClient client, DataMap request) {
+        if (request.containsKey(DataSyncUtil.KEY_METRICS_ENABLED)) {
+            MetricsRecorder.setEnabled(request.getBoolean(DataSyncUtil.KEY_METRICS_ENABLED));
         }
-    }
 
-    @Override  // GoogleApiClient.ConnectionCallbacks
-    public void onConnectionSuspended(int cause) {
-        if (Log.isLoggable(TAG, Log.DEBUG)) {
-            Log.d(TAG, "onConnectionSuspended: " + cause);
+        DataMap dataMap = new DataMap();
+        dataMap.putBoolean(DataSyncUtil.KEY_METRICS_ENABLED, MetricsRecorder.isEnabled());
+        dataMap.putString(DataSyncUtil.KEY_METRICS_DUMP, MetricsRecorder.dump());
+        MessageSender.sendMessage(client, DataSyncUtil.PATH_DEBUG_METRICS_DUMP, dataMap);
+
+        if (request.getBoolean(DataSyncUtil.KEY_METRICS_RESET, false)) {
+            MetricsRecorder.reset();
         }
     }
 
-    @Override  // GoogleApiClient.OnConnectionFailedListener
-    public void onConnectionFailed(ConnectionResult result) {
-        if (Log.isLoggable(TAG, Log.DEBUG)) {
-            Log.d(TAG, "onConnectionFailed: " + result);
+    /**
+     * Stores the forecast as one packed DataItem per area (DataSyncUtil.getWeatherPath()), so a
+     * face only reads and is only notified about the area it shows. The DataApi skips writes of
+     * unchanged data, so an area whose forecast didn't change doesn't trigger onDataChanged.
+     * Forecasts of older phones (KEY_WEATHER_LIST) are converted to the packed format here.
+     */
+    private void syncWeather(GoogleApiClient client, DataMap dataMap, int rawSize) {
+        MetricsRecorder.add(MetricsRecorder.COUNTER_WEATHER_BYTES, rawSize);
+
+        byte[] packed = dataMap.getByteArray(DataSyncUtil.KEY_WEATHER_PACKED);
+        if (!ForecastCodec.isValid(packed)) {
+            ArrayList<DataMap> weatherList =
+                    dataMap.getDataMapArrayList(DataSyncUtil.KEY_WEATHER_LIST);
+            if (weatherList == null || weatherList.isEmpty()) {
+                return;
+            }
+            packed = packWeatherList(weatherList);
         }
-    }
 
+        int count = ForecastCodec.getCount(packed);
+        int baseSlot = ForecastCodec.getBaseSlot(packed);
+        boolean[] written = new boolean[256]; // area is an unsigned byte
+        for (int i = 0; i < count; i++) {
+            int area = ForecastCodec.getArea(packed, i);
+            if (written[area]) {
+                continue;
+            }
+            written[area] = true;
+
+            ForecastCodec.Writer writer =
+                    new ForecastCodec.Writer(baseSlot, DataSyncUtil.FORECAST_WINDOWS);
+            for (int j = i; j < count; j++) {
+                if (ForecastCodec.getArea(packed, j) == area) {
+                    writer.add(ForecastCodec.getSlot(packed, j), area,
+                            ForecastCodec.getWeatherId(packed, j));
+                }
+            }
+            DataMap areaDataMap = new DataMap();
+            areaDataMap.putByteArray(DataSyncUtil.KEY_WEATHER_PACKED, writer.toByteArray());
+            DataMapUtil.putDataItem(client, DataSyncUtil.getWeatherPath(area), areaDataMap);
+        }
+    }
 
-    private void syncWeather(DataMap dataMap) {
-        DataMapUtil.overwriteKeysInDataMap(mGoogleApiClient,
-                DataSyncUtil.PATH_DATA_WEATHER, dataMap);
+    private static byte[] packWeatherList(ArrayList<DataMap> weatherList) {
+        ForecastCodec.Writer writer = null;
+        for (DataMap weatherDataMap : weatherList) {
+            int slot = ETime.getTimeSlot(
+                    weatherDataMap.getInt(DataSyncUtil.KEY_WEATHER_YEAR),
+                    weatherDataMap.getInt(DataSyncUtil.KEY_WEATHER_MONTH),
+                    weatherDataMap.getInt(DataSyncUtil.KEY_WEATHER_DAY),
+                    weatherDataMap.getInt(DataSyncUtil.KEY_WEATHER_HOUR));
+            if (writer == null) {
+                writer = new ForecastCodec.Writer(slot, weatherList.size());
+            }
+            writer.add(slot, weatherDataMap.getInt(DataSyncUtil.KEY_WEATHER_AREA),
+                    weatherDataMap.getInt(DataSyncUtil.KEY_WEATHER_ID));
+        }
+        return writer.toByteArray();
     }
 
 }
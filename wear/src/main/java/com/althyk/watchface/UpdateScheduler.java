@@ -0,0 +1,52 @@
+package com.althyk.watchface;
+
+import com.althyk.watchfacecommon.ETime;
+
+/**
+ * Computes the LT instant of the next visible change of a watch face, so that an engine posts a
+ * single delayed message for it instead of polling at a fixed rate.
+ * The current time is always passed in, which keeps the schedule deterministic for a given clock.
+ */
+final class UpdateScheduler {
+    /** Digital face, interactive: next ET minute or LT minute. */
+    static final int DIGITAL_INTERACTIVE = 0;
+    /** Digital face, ambient: next ET hour (LT minutes come from onTimeTick). */
+    static final int DIGITAL_AMBIENT = 1;
+    /** Analog face, interactive: next LT second (minute hand) or ET hour (ring). */
+    static final int ANALOG_INTERACTIVE = 2;
+
+    private static final long LT_SECOND_IN_MS = 1000;
+    private static final long LT_MINUTE_IN_MS = 60 * 1000;
+
+    private long mWakeupCount = 0;
+
+    /** Returns the LT millis of the next update after nowMs. */
+    static long nextUpdateTime(int policy, long nowMs) {
+        switch (policy) {
+            case DIGITAL_INTERACTIVE:
+                return Math.min(ETime.nextBoundary(nowMs, ETime.MINUTE_IN_MILLIS),
+                        nextMultiple(nowMs, LT_MINUTE_IN_MS));
+            case DIGITAL_AMBIENT:
+                return ETime.nextBoundary(nowMs, ETime.HOUR_IN_MILLIS);
+            case ANALOG_INTERACTIVE:
+                return Math.min(ETime.nextBoundary(nowMs, ETime.HOUR_IN_MILLIS),
+                        nextMultiple(nowMs, LT_SECOND_IN_MS));
+            default:
+                throw new IllegalArgumentException("Unknown policy: " + policy);
+        }
+    }
+
+    /** Returns the delay until the next update and counts it as a wakeup. */
+    long scheduleDelay(int policy, long nowMs) {
+        mWakeupCount++;
+        return nextUpdateTime(policy, nowMs) - nowMs;
+    }
+
+    long getWakeupCount() {
+        return mWakeupCount;
+    }
+
+    private static long nextMultiple(long nowMs, long periodMs) {
+        return nowMs - nowMs % periodMs + periodMs;
+    }
+}
@@ -1,8 +1,9 @@
 package com.althyk.watchface;
 
 
-import android.animation.AnimatorSet;
-import android.animation.ObjectAnimator;
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
 import android.app.Activity;
 import android.content.Context;
 import android.os.Bundle;
@@ -10,7 +11,6 @@ import android.support.v7.widget.RecyclerView;
 import android.support.wearable.view.BoxInsetLayout;
 import android.support.wearable.view.CircledImageView;
 import android.support.wearable.view.WearableListView;
-import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.WindowInsets;
@@ -19,17 +19,22 @@ import android.widget.TextView;
 
 import com.althyk.watchfacecommon.DataMapUtil;
 import com.althyk.watchfacecommon.DataSyncUtil;
-import com.google.android.gms.common.ConnectionResult;
+import com.althyk.watchfacecommon.WearableConnection;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.wearable.DataMap;
-import com.google.android.gms.wearable.Wearable;
+
+import java.util.ArrayList;
 
 public class WearableConfigActivity  extends Activity implements
         WearableListView.ClickListener, WearableListView.OnScrollListener {
     private static final String TAG = "WearableConfig";
 
-    private GoogleApiClient mGoogleApiClient;
+    private WearableConnection mConnection;
+    private AreaSelection mAreaSelection;
+    private WearableConnection.Callback mScrollToSelectedArea;
+    private boolean mConnectionAcquired;
     private TextView mHeader;
+    private WearableListView mListView;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -37,7 +42,7 @@ public class WearableConfigActivity  extends Activity implements
         setContentView(R.layout.activity_weather_config);
 
         mHeader = (TextView) findViewById(R.id.header);
-        final WearableListView listView = (WearableListView) findViewById(R.id.weather_picker);
+        mListView = (WearableListView) findViewById(R.id.weather_picker);
         BoxInsetLayout content = (BoxInsetLayout) findViewById(R.id.content);
         // BoxInsetLayout adds padding by default on round devices. Add some on square devices.
         content.setOnApplyWindowInsetsListener(new View.OnApplyWindowInsetsListener() {
@@ -54,63 +59,55 @@ public class WearableConfigActivity  extends Activity implements
             }
         });
 
-        listView.setHasFixedSize(true);
-        listView.setClickListener(this);
-        listView.addOnScrollListener(this);
+        mListView.setHasFixedSize(true);
+        mListView.setClickListener(this);
+        mListView.addOnScrollListener(this);
 
         String[] areas = getResources().getStringArray(R.array.area_array);
-        listView.setAdapter(new AreaListAdapter(areas));
-
-        mGoogleApiClient = new GoogleApiClient.Builder(this)
-                .addConnectionCallbacks(new GoogleApiClient.ConnectionCallbacks() {
-                    @Override
-                    public void onConnected(Bundle connectionHint) {
-                        if (Log.isLoggable(TAG, Log.DEBUG)) {
-                            Log.d(TAG, "onConnected: " + connectionHint);
-                        }
-
-                        // scroll to selected area
-                        DataMapUtil.fetchDataMap(mGoogleApiClient, DataSyncUtil.PATH_DATA_AREA,
-                                new DataMapUtil.FetchDataMapCallback() {
-                                    @Override
-                                    public void onDataMapFetched(DataMap config) {
-                                        int areaId = config.getInt(DataSyncUtil.KEY_WEATHER_AREA, -1);
-                                        if (areaId != -1) {
-                                            listView.scrollToPosition(areaId);
-                                        }
-                                    }
-                                });
-                    }
-
-                    @Override
-                    public void onConnectionSuspended(int cause) {
-                        if (Log.isLoggable(TAG, Log.DEBUG)) {
-                            Log.d(TAG, "onConnectionSuspended: " + cause);
-                        }
-                    }
-                })
-                .addOnConnectionFailedListener(new GoogleApiClient.OnConnectionFailedListener() {
-                    @Override
-                    public void onConnectionFailed(ConnectionResult result) {
-                        if (Log.isLoggable(TAG, Log.DEBUG)) {
-                            Log.d(TAG, "onConnectionFailed: " + result);
-                        }
-                    }
-                })
-                .addApi(Wearable.API)
-                .build();
+        mListView.setAdapter(new AreaListAdapter(areas));
+        // keep every bound item, so scrolling back doesn't bind (and lay out labels) again
+        mListView.setItemViewCacheSize(areas.length);
+
+        mConnection = WearableConnection.getInstance(this);
+        mAreaSelection = AreaSelection.getInstance(this);
+        mScrollToSelectedArea = new WearableConnection.Callback() {
+            @Override
+            public void onConnected(GoogleApiClient client) {
+                DataMapUtil.fetchDataMap(client, DataSyncUtil.PATH_DATA_AREA,
+                        new DataMapUtil.FetchDataMapCallback() {
+                            @Override
+                            public void onDataMapFetched(DataMap config) {
+                                int areaId = config.getInt(DataSyncUtil.KEY_WEATHER_AREA, -1);
+                                if (areaId != -1) {
+                                    mAreaSelection.onCommitted(areaId);
+                                    mListView.scrollToPosition(areaId);
+                                }
+                            }
+                        });
+            }
+        };
     }
 
     @Override
     protected void onStart() {
         super.onStart();
-        mGoogleApiClient.connect();
+        int areaId = mAreaSelection.getArea();
+        if (areaId != DataSyncUtil.AREA_ALL) {
+            // the selection is known in this process, no need to read the DataItem
+            mListView.scrollToPosition(areaId);
+            return;
+        }
+        mConnection.acquire();
+        mConnectionAcquired = true;
+        mConnection.whenConnected(mScrollToSelectedArea);
     }
 
     @Override
     protected void onStop() {
-        if (mGoogleApiClient != null && mGoogleApiClient.isConnected()) {
-            mGoogleApiClient.disconnect();
+        if (mConnectionAcquired) {
+            mConnectionAcquired = false;
+            mConnection.cancel(mScrollToSelectedArea);
+            mConnection.release();
         }
         super.onStop();
     }
@@ -118,7 +115,8 @@ public class WearableConfigActivity  extends Activity implements
     @Override // WearableListView.ClickListener
     public void onClick(WearableListView.ViewHolder viewHolder) {
         AreaItemViewHolder areaItemViewHolder = (AreaItemViewHolder) viewHolder;
-        updateConfigDataItem(areaItemViewHolder.mAreaItem.getArea());
+        // applied to the faces right away, written to the DataItem once the selection settles
+        mAreaSelection.select(areaItemViewHolder.mAreaItem.getArea());
         finish();
     }
 
@@ -140,23 +138,24 @@ public class WearableConfigActivity  extends Activity implements
     @Override // WearableListView.OnScrollListener
     public void onCentralPositionChanged(int centralPosition) {}
 
-    private void updateConfigDataItem(final int areaId) {
-        DataMap configKeysToOverwrite = new DataMap();
-        configKeysToOverwrite.putInt(DataSyncUtil.KEY_WEATHER_AREA, areaId);
-        DataMapUtil.overwriteKeysInDataMap(mGoogleApiClient,
-                DataSyncUtil.PATH_DATA_AREA, configKeysToOverwrite);
-    }
-
     private class AreaListAdapter extends WearableListView.Adapter {
         private final String[] mAreas;
+        private final int mAreaPickerItemMargin;
+        private final AreaItemAnimatorPool mAnimatorPool = new AreaItemAnimatorPool();
 
         public AreaListAdapter(String[] areas) {
             mAreas = areas;
+            mAreaPickerItemMargin = (int) getResources()
+                    .getDimension(R.dimen.config_area_picker_item_margin);
         }
 
         @Override
         public AreaItemViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
-            return new AreaItemViewHolder(new AreaItem(parent.getContext()));
+            AreaItem areaItem = new AreaItem(parent.getContext(), mAnimatorPool);
+            areaItem.setLayoutParams(
+                    new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                            ViewGroup.LayoutParams.WRAP_CONTENT));
+            return new AreaItemViewHolder(areaItem);
         }
 
         @Override
@@ -165,20 +164,16 @@ public class WearableConfigActivity  extends Activity implements
             String areaName = mAreas[position];
             areaItemViewHolder.mAreaItem.setArea(areaName, position);
 
-            RecyclerView.LayoutParams layoutParams =
-                    new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
-                            ViewGroup.LayoutParams.WRAP_CONTENT);
-            int areaPickerItemMargin = (int) getResources()
-                    .getDimension(R.dimen.config_area_picker_item_margin);
             // Add margins to first and last item to make it possible for user to tap on them.
-            if (position == 0) {
-                layoutParams.setMargins(0, areaPickerItemMargin, 0, 0);
-            } else if (position == mAreas.length - 1) {
-                layoutParams.setMargins(0, 0, 0, areaPickerItemMargin);
-            } else {
-                layoutParams.setMargins(0, 0, 0, 0);
+            int topMargin = position == 0 ? mAreaPickerItemMargin : 0;
+            int bottomMargin = position == mAreas.length - 1 ? mAreaPickerItemMargin : 0;
+            // the layout params are reused, only a change of the margins needs a layout pass
+            RecyclerView.LayoutParams layoutParams =
+                    (RecyclerView.LayoutParams) areaItemViewHolder.itemView.getLayoutParams();
+            if (layoutParams.topMargin != topMargin || layoutParams.bottomMargin != bottomMargin) {
+                layoutParams.setMargins(0, topMargin, 0, bottomMargin);
+                areaItemViewHolder.itemView.setLayoutParams(layoutParams);
             }
-            areaItemViewHolder.itemView.setLayoutParams(layoutParams);
         }
 
         @Override
@@ -187,6 +182,71 @@ public class WearableConfigActivity  extends Activity implements
         }
     }
 
+    /**
+     * Expand/shrink animators shared by all area items. Only the items that enter and leave the
+     * center animate at the same time, so a couple of animators serve the whole list.
+     */
+    private static class AreaItemAnimatorPool {
+        private final ArrayList<AreaItemAnimator> mFreeAnimators = new ArrayList<>();
+
+        AreaItemAnimator obtain() {
+            int size = mFreeAnimators.size();
+            return size > 0 ? mFreeAnimators.remove(size - 1) : new AreaItemAnimator(this);
+        }
+
+        void recycle(AreaItemAnimator animator) {
+            mFreeAnimators.add(animator);
+        }
+    }
+
+    /** Animates the icon scale and the label alpha of one item at a time. */
+    private static class AreaItemAnimator extends AnimatorListenerAdapter implements
+            ValueAnimator.AnimatorUpdateListener {
+        private final AreaItemAnimatorPool mPool;
+        private final ValueAnimator mAnimator = ValueAnimator.ofFloat(0f, 1f);
+
+        private AreaItem mItem;
+        private float mFromScale;
+        private float mToScale;
+        private float mFromAlpha;
+        private float mToAlpha;
+
+        AreaItemAnimator(AreaItemAnimatorPool pool) {
+            mPool = pool;
+            mAnimator.setDuration(AreaItem.ANIMATION_DURATION_MS);
+            mAnimator.addUpdateListener(this);
+            mAnimator.addListener(this);
+        }
+
+        /** Animates from the current values of the item. */
+        void start(AreaItem item, float toScale, float toAlpha) {
+            mItem = item;
+            mFromScale = item.mIcon.getScaleX();
+            mToScale = toScale;
+            mFromAlpha = item.mLabel.getAlpha();
+            mToAlpha = toAlpha;
+            mAnimator.start();
+        }
+
+        void cancel() {
+            mAnimator.cancel();
+        }
+
+        @Override // ValueAnimator.AnimatorUpdateListener
+        public void onAnimationUpdate(ValueAnimator animation) {
+            float t = animation.getAnimatedFraction();
+            mItem.apply(mFromScale + (mToScale - mFromScale) * t,
+                    mFromAlpha + (mToAlpha - mFromAlpha) * t);
+        }
+
+        @Override // AnimatorListenerAdapter, also called after cancel()
+        public void onAnimationEnd(Animator animation) {
+            mItem.onAnimatorEnd(this);
+            mItem = null;
+            mPool.recycle(this);
+        }
+    }
+
     /** The layout of a color item including image and label. */
     private static class AreaItem extends LinearLayout implements
             WearableListView.OnCenterProximityListener {
@@ -198,100 +258,95 @@ public class WearableConfigActivity  extends Activity implements
         private static final float SHRINK_LABEL_ALPHA = .5f;
         private static final float EXPAND_LABEL_ALPHA = 1f;
 
+        /** Crest of each area id */
+        private static final int[] CREST_RES_IDS = {
+                R.drawable.no_weather,
+                R.drawable.limsa_lominsa_crest, R.drawable.limsa_lominsa_crest,
+                R.drawable.limsa_lominsa_crest, R.drawable.limsa_lominsa_crest,
+                R.drawable.limsa_lominsa_crest, R.drawable.limsa_lominsa_crest,
+                R.drawable.limsa_lominsa_crest, R.drawable.limsa_lominsa_crest,
+                R.drawable.limsa_lominsa_crest,                                   // 1 - 9
+                R.drawable.gridania_crest, R.drawable.gridania_crest,
+                R.drawable.gridania_crest, R.drawable.gridania_crest,
+                R.drawable.gridania_crest, R.drawable.gridania_crest,             // 10 - 15
+                R.drawable.uldah_crest, R.drawable.uldah_crest, R.drawable.uldah_crest,
+                R.drawable.uldah_crest, R.drawable.uldah_crest, R.drawable.uldah_crest,
+                R.drawable.uldah_crest,                                           // 16 - 22
+                R.drawable.ishgard_crest,                                         // 23
+                R.drawable.other_crest,                                           // 24
+        };
+
         private int mAreaId;
+        private String mLabelText;
+        private int mCrestResId;
         private final TextView mLabel;
         private final CircledImageView mIcon;
 
-        private final ObjectAnimator mExpandIconXAnimator;
-        private final ObjectAnimator mExpandIconYAnimator;
-        private final ObjectAnimator mExpandLabelAnimator;
-        private final AnimatorSet mExpandAnimator;
-
-        private final ObjectAnimator mShrinkIconXAnimator;
-        private final ObjectAnimator mShrinkIconYAnimator;
-        private final ObjectAnimator mShrinkLabelAnimator;
-        private final AnimatorSet mShrinkAnimator;
+        private final AreaItemAnimatorPool mAnimatorPool;
+        private AreaItemAnimator mAnimator;
+        private boolean mExpanding;
 
-        public AreaItem(Context context) {
+        public AreaItem(Context context, AreaItemAnimatorPool animatorPool) {
             super(context);
             View.inflate(context, R.layout.area_picker_item, this);
 
             mAreaId = -1;
             mLabel = (TextView) findViewById(R.id.label);
             mIcon = (CircledImageView) findViewById(R.id.icon);
-
-            mShrinkIconXAnimator = ObjectAnimator.ofFloat(mIcon, "scaleX",
-                    EXPAND_ICON_SCALE, SHRINK_ICON_SCALE);
-            mShrinkIconYAnimator = ObjectAnimator.ofFloat(mIcon, "scaleY",
-                    EXPAND_ICON_SCALE, SHRINK_ICON_SCALE);
-            mShrinkLabelAnimator = ObjectAnimator.ofFloat(mLabel, "alpha",
-                    EXPAND_LABEL_ALPHA, SHRINK_LABEL_ALPHA);
-            mShrinkAnimator = new AnimatorSet().setDuration(ANIMATION_DURATION_MS);
-            mShrinkAnimator.playTogether(mShrinkIconXAnimator, mShrinkIconYAnimator,
-                    mShrinkLabelAnimator);
-
-            mExpandIconXAnimator = ObjectAnimator.ofFloat(mIcon, "scaleX",
-                    SHRINK_ICON_SCALE, EXPAND_ICON_SCALE);
-            mExpandIconYAnimator = ObjectAnimator.ofFloat(mIcon, "scaleY",
-                    SHRINK_ICON_SCALE, EXPAND_ICON_SCALE);
-            mExpandLabelAnimator = ObjectAnimator.ofFloat(mLabel, "alpha",
-                    SHRINK_LABEL_ALPHA, EXPAND_LABEL_ALPHA);
-            mExpandAnimator = new AnimatorSet().setDuration(ANIMATION_DURATION_MS);
-            mExpandAnimator.playTogether(mExpandIconXAnimator, mExpandIconYAnimator,
-                    mExpandLabelAnimator);
+            mAnimatorPool = animatorPool;
         }
 
         @Override
         public void onCenterPosition(boolean animate) {
-            if (animate) {
-                mShrinkAnimator.cancel();
-                if (!mExpandAnimator.isRunning()) {
-                    mExpandIconXAnimator.setFloatValues(mIcon.getScaleX(), EXPAND_ICON_SCALE);
-                    mExpandIconYAnimator.setFloatValues(mIcon.getScaleY(), EXPAND_ICON_SCALE);
-                    mExpandLabelAnimator.setFloatValues(mLabel.getAlpha(), EXPAND_LABEL_ALPHA);
-                    mExpandAnimator.start();
-                }
-            } else {
-                mExpandAnimator.cancel();
-                mIcon.setScaleX(EXPAND_ICON_SCALE);
-                mIcon.setScaleY(EXPAND_ICON_SCALE);
-                mLabel.setAlpha(EXPAND_LABEL_ALPHA);
-            }
+            animateTo(true, animate, EXPAND_ICON_SCALE, EXPAND_LABEL_ALPHA);
         }
 
         @Override
         public void onNonCenterPosition(boolean animate) {
-            if (animate) {
-                mExpandAnimator.cancel();
-                if (!mShrinkAnimator.isRunning()) {
-                    mShrinkIconXAnimator.setFloatValues(mIcon.getScaleX(), SHRINK_ICON_SCALE);
-                    mShrinkIconYAnimator.setFloatValues(mIcon.getScaleY(), SHRINK_ICON_SCALE);
-                    mShrinkLabelAnimator.setFloatValues(mLabel.getAlpha(), SHRINK_LABEL_ALPHA);
-                    mShrinkAnimator.start();
+            animateTo(false, animate, SHRINK_ICON_SCALE, SHRINK_LABEL_ALPHA);
+        }
+
+        private void animateTo(boolean expand, boolean animate, float scale, float alpha) {
+            if (mAnimator != null) {
+                if (animate && mExpanding == expand) {
+                    return; // already on the way
                 }
+                mAnimator.cancel();
+            }
+            if (animate) {
+                mExpanding = expand;
+                mAnimator = mAnimatorPool.obtain();
+                mAnimator.start(this, scale, alpha);
             } else {
-                mShrinkAnimator.cancel();
-                mIcon.setScaleX(SHRINK_ICON_SCALE);
-                mIcon.setScaleY(SHRINK_ICON_SCALE);
-                mLabel.setAlpha(SHRINK_LABEL_ALPHA);
+                apply(scale, alpha);
+            }
+        }
+
+        private void apply(float scale, float alpha) {
+            mIcon.setScaleX(scale);
+            mIcon.setScaleY(scale);
+            mLabel.setAlpha(alpha);
+        }
+
+        private void onAnimatorEnd(AreaItemAnimator animator) {
+            if (mAnimator == animator) {
+                mAnimator = null;
             }
         }
 
         private void setArea(String label, int areaId) {
             mAreaId = areaId;
-            mLabel.setText(label);
-            if (areaId == 0) {
-                mIcon.setImageResource(R.drawable.no_weather);
-            } else if (1 <= areaId && areaId <= 9) {
-                mIcon.setImageResource(R.drawable.limsa_lominsa_crest);
-            } else if (10 <= areaId && areaId <= 15) {
-                mIcon.setImageResource(R.drawable.gridania_crest);
-            } else if (16 <= areaId && areaId <= 22) {
-                mIcon.setImageResource(R.drawable.uldah_crest);
-            } else if (areaId == 23) {
-                mIcon.setImageResource(R.drawable.ishgard_crest);
-            } else if (areaId == 24) {
-                mIcon.setImageResource(R.drawable.other_crest);
+            // The labels come from one array, so an unchanged label is the same instance.
+            // A changed one still allocates: setText() builds a new layout.
+            if (label != mLabelText) {
+                mLabelText = label;
+                mLabel.setText(label);
+            }
+            int crestResId = areaId >= 0 && areaId < CREST_RES_IDS.length
+                    ? CREST_RES_IDS[areaId] : R.drawable.other_crest;
+            if (crestResId != mCrestResId) {
+                mCrestResId = crestResId;
+                mIcon.setImageResource(crestResId);
             }
         }
 
@@ -0,0 +1,109 @@
+package com.althyk.watchface;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+
+/**
+ * Decode-once cache of the scaled weather icons, keyed by (weather id, size, low-bit variant).
+ * The cache is bounded in bytes and evicts the least recently used icon. Evicted bitmaps are not
+ * recycled: the forecast of an engine may still hold them, and they are freed by the GC once it
+ * lets go.
+ */
+final class WeatherIconCache {
+    private static final String TAG = "WeatherIconCache";
+
+    static final int ICON_COUNT = 18; // weather_icon_01 .. weather_icon_18
+    static final int DEFAULT_MAX_BYTES = 256 * 1024;
+
+    private final Resources mResources;
+    private final String mPackageName;
+    private final LruCache<Integer, Bitmap> mCache;
+
+    WeatherIconCache(Resources resources, String packageName, int maxBytes) {
+        mResources = resources;
+        mPackageName = packageName;
+        mCache = new LruCache<Integer, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Integer key, Bitmap value) {
+                return value.getByteCount();
+            }
+
+            @Override
+            protected Bitmap create(Integer key) {
+                return decode(weatherIdOf(key), iconSizeOf(key), isLowBit(key));
+            }
+        };
+    }
+
+    /** Returns the icon for the weather id, decoding it only on the first request. */
+    Bitmap get(int weatherId, int size, boolean lowBit) {
+        return mCache.get(key(weatherId, size, lowBit));
+    }
+
+    /** Decodes every weather icon ahead of time so the first forecast doesn't have to. */
+    void prewarm(int size, boolean lowBit) {
+        for (int weatherId = 1; weatherId <= ICON_COUNT; weatherId++) {
+            get(weatherId, size, lowBit);
+        }
+    }
+
+    void evictAll() {
+        mCache.evictAll();
+    }
+
+    int hitCount() {
+        return mCache.hitCount();
+    }
+
+    int missCount() {
+        return mCache.missCount();
+    }
+
+    int evictionCount() {
+        return mCache.evictionCount();
+    }
+
+    @Override
+    public String toString() {
+        return mCache.toString();
+    }
+
+    private Bitmap decode(int weatherId, int size, boolean lowBit) {
+        String resourceName = String.format("weather_icon_%02d", weatherId);
+        int iconId = mResources.getIdentifier(resourceName, "drawable", mPackageName);
+        if (iconId == 0) {
+            Log.e(TAG, "Unknown weather id: " + weatherId);
+            return null;
+        }
+
+        Bitmap source = BitmapFactory.decodeResource(mResources, iconId);
+        if (source == null) {
+            return null;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(source, size, size, !lowBit);
+        if (scaled != source) {
+            source.recycle();
+        }
+        return scaled;
+    }
+
+    // | weather id (8bit) | size (16bit) | low-bit (1bit) |
+    private static Integer key(int weatherId, int size, boolean lowBit) {
+        return (weatherId & 0xff) << 17 | (size & 0xffff) << 1 | (lowBit ? 1 : 0);
+    }
+
+    private static int weatherIdOf(Integer key) {
+        return (key >> 17) & 0xff;
+    }
+
+    private static int iconSizeOf(Integer key) {
+        return (key >> 1) & 0xffff;
+    }
+
+    private static boolean isLowBit(Integer key) {
+        return (key & 1) != 0;
+    }
+}